@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorObject;
+import com.github.fonimus.ssh.shell.postprocess.provided.SavePostProcessor;
+import lombok.Getter;
+import org.springframework.shell.Input;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.github.fonimus.ssh.shell.ExtendedInput.ARROW;
+import static com.github.fonimus.ssh.shell.ExtendedInput.DOUBLE_ARROW;
+import static com.github.fonimus.ssh.shell.ExtendedInput.PIPE;
+
+/**
+ * <p>Compiled command line: command part, followed by post processors stages ({@code | name params}) and output
+ * redirection ({@code > file} or {@code >> file} to append, which is a save post processor stage)</p>
+ * <p>Plans are immutable and compiled in a single pass over the words, the last compiled lines are cached as
+ * scripts and batches often repeat the same ones</p>
+ */
+@Getter
+public final class CommandPipeline {
+
+    static final int CACHE_SIZE = 1024;
+
+    private static final ReentrantLock CACHE_LOCK = new ReentrantLock();
+
+    private static final Map<String, CommandPipeline> CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CommandPipeline> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Raw text of the command part, without post processors
+     */
+    private final String rawText;
+
+    /**
+     * Words of the command part, without post processors
+     */
+    private final List<String> words;
+
+    /**
+     * Post processors stages, in order
+     */
+    private final List<PostProcessorObject> postProcessors;
+
+    /**
+     * Last output redirection target, or null if none
+     */
+    private final String redirect;
+
+    private CommandPipeline(String rawText, List<String> words, List<PostProcessorObject> postProcessors,
+                            String redirect) {
+        this.rawText = rawText;
+        this.words = words;
+        this.postProcessors = postProcessors;
+        this.redirect = redirect;
+    }
+
+    /**
+     * @return true if command line has at least one post processor
+     */
+    public boolean hasPostProcessors() {
+        return !postProcessors.isEmpty();
+    }
+
+    /**
+     * Get plan of given input, from cache if line has already been compiled
+     *
+     * @param input shell input
+     * @return command pipeline
+     */
+    public static CommandPipeline of(Input input) {
+        if (input instanceof ExtendedInput) {
+            return ((ExtendedInput) input).getPipeline();
+        }
+        String raw = input.rawText();
+        if (raw == null) {
+            return compile(null, input.words());
+        }
+        CommandPipeline pipeline;
+        CACHE_LOCK.lock();
+        try {
+            pipeline = CACHE.get(raw);
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+        if (pipeline == null) {
+            // same line always gives same words, no need to hold the lock while compiling
+            pipeline = compile(raw, input.words());
+            CACHE_LOCK.lock();
+            try {
+                CACHE.put(raw, pipeline);
+            } finally {
+                CACHE_LOCK.unlock();
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Compile command line
+     *
+     * @param raw   raw text, can be null
+     * @param words parsed words
+     * @return command pipeline
+     */
+    static CommandPipeline compile(String raw, List<String> words) {
+        int size = words.size();
+        int commandEnd = size;
+        List<PostProcessorObject> postProcessors = new ArrayList<>();
+        String redirect = null;
+        int i = 0;
+        while (i < size) {
+            String word = words.get(i);
+            if (!isKey(word)) {
+                i++;
+                continue;
+            }
+            if (commandEnd == size) {
+                commandEnd = i;
+            }
+            int stageStart = i + 1;
+            int stageEnd = stageStart;
+            while (stageEnd < size && !isKey(words.get(stageEnd))) {
+                stageEnd++;
+            }
+            // key char without name or target is ignored
+            if (stageEnd > stageStart) {
+                if (PIPE.equals(word)) {
+                    postProcessors.add(new PostProcessorObject(words.get(stageStart),
+                            List.copyOf(words.subList(stageStart + 1, stageEnd))));
+                } else {
+                    redirect = words.get(stageStart);
+                    // '>' truncates target, '>>' appends to it
+                    postProcessors.add(new PostProcessorObject(SavePostProcessor.SAVE, ARROW.equals(word) ?
+                            List.of(SavePostProcessor.TRUNCATE, redirect) : List.of(redirect)));
+                }
+            }
+            i = stageEnd;
+        }
+        return new CommandPipeline(commandText(raw), List.copyOf(words.subList(0, commandEnd)),
+                Collections.unmodifiableList(postProcessors), redirect);
+    }
+
+    /**
+     * @param word parsed word
+     * @return true if word starts a post processor stage or an output redirection
+     */
+    static boolean isKey(String word) {
+        return PIPE.equals(word) || ARROW.equals(word) || DOUBLE_ARROW.equals(word);
+    }
+
+    private static String commandText(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '|' || c == '>') {
+                return raw.substring(0, i);
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * Clear compiled lines cache
+     */
+    static void clearCache() {
+        CACHE_LOCK.lock();
+        try {
+            CACHE.clear();
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * @return number of compiled lines in cache
+     */
+    static int cacheSize() {
+        CACHE_LOCK.lock();
+        try {
+            return CACHE.size();
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+    }
+}
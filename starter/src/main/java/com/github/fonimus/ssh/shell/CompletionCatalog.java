@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.springframework.shell.CompletionProposal;
+import org.springframework.shell.command.CommandOption;
+import org.springframework.shell.command.CommandRegistration;
+
+import java.util.*;
+
+/**
+ * <p>Prefix index of commands and of their options, used for completion</p>
+ * <p>Commands are sorted by name, so that proposals for a prefix come from a sub map, and the command of a line is
+ * found with one lookup per word instead of a scan of all registrations</p>
+ */
+final class CompletionCatalog {
+
+    static final String COMMANDS_CATEGORY = "Available commands";
+
+    private final NavigableMap<String, CommandRegistration> commands = new TreeMap<>();
+
+    private final Map<String, Map<String, CommandOption>> options = new HashMap<>();
+
+    private CompletionCatalog(Map<String, CommandRegistration> registrations) {
+        commands.putAll(registrations);
+        for (Map.Entry<String, CommandRegistration> entry : commands.entrySet()) {
+            Map<String, CommandOption> byName = new HashMap<>();
+            for (CommandOption option : entry.getValue().getOptions()) {
+                for (String longName : option.getLongNames()) {
+                    byName.putIfAbsent("--" + longName, option);
+                }
+                for (Character shortName : option.getShortNames()) {
+                    byName.putIfAbsent("-" + shortName, option);
+                }
+            }
+            options.put(entry.getKey(), byName);
+        }
+    }
+
+    /**
+     * Build catalog
+     *
+     * @param registrations registrations by command name (aliases included)
+     * @return catalog
+     */
+    static CompletionCatalog of(Map<String, CommandRegistration> registrations) {
+        return new CompletionCatalog(registrations);
+    }
+
+    /**
+     * Check whether catalog was built from given registrations, which are looked up again on each completion as
+     * commands can be registered after startup
+     *
+     * @param registrations current registrations by command name
+     * @return true if same commands are registered, with same registrations
+     */
+    boolean isUpToDate(Map<String, CommandRegistration> registrations) {
+        if (registrations.size() != commands.size()) {
+            return false;
+        }
+        for (Map.Entry<String, CommandRegistration> entry : registrations.entrySet()) {
+            if (commands.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of indexed command names
+     */
+    int size() {
+        return commands.size();
+    }
+
+    /**
+     * Proposals of visible commands starting with given prefix, with only the words after the last one of prefix
+     *
+     * @param prefix line up to cursor
+     * @return command proposals
+     */
+    List<CompletionProposal> commandsStartingWith(String prefix) {
+        int lastWordStart = prefix.lastIndexOf(' ') + 1;
+        List<CompletionProposal> proposals = new ArrayList<>();
+        for (Map.Entry<String, CommandRegistration> entry : commands.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            CommandRegistration registration = entry.getValue();
+            if (!registration.isHidden()) {
+                proposals.add(new CompletionProposal(entry.getKey().substring(lastWordStart))
+                        .dontQuote(true).category(COMMANDS_CATEGORY).description(registration.getDescription()));
+            }
+        }
+        return proposals;
+    }
+
+    /**
+     * Find the longest command that given line starts with
+     *
+     * @param prefix line up to cursor
+     * @return command name, or null if none
+     */
+    String longestCommand(String prefix) {
+        String found = null;
+        int end = prefix.indexOf(' ');
+        while (true) {
+            String candidate = end < 0 ? prefix : prefix.substring(0, end);
+            if (commands.containsKey(candidate)) {
+                found = candidate;
+            }
+            if (end < 0) {
+                return found;
+            }
+            end = prefix.indexOf(' ', end + 1);
+        }
+    }
+
+    /**
+     * @param command command name
+     * @return command registration, or null if unknown
+     */
+    CommandRegistration registration(String command) {
+        return commands.get(command);
+    }
+
+    /**
+     * Options of command designated by given word ({@code --long}, {@code -s} or {@code -abc} for several short
+     * options)
+     *
+     * @param command command name
+     * @param word    word
+     * @return matching options
+     */
+    List<CommandOption> matchOptions(String command, String word) {
+        Map<String, CommandOption> byName = options.get(command);
+        if (byName == null || word == null || !word.startsWith("-")) {
+            return Collections.emptyList();
+        }
+        if (word.startsWith("--") || word.length() == 2) {
+            CommandOption option = byName.get(word);
+            return option != null ? Collections.singletonList(option) : Collections.emptyList();
+        }
+        List<CommandOption> matched = new ArrayList<>();
+        for (int i = 1; i < word.length(); i++) {
+            CommandOption option = byName.get("-" + word.charAt(i));
+            if (option != null) {
+                matched.add(option);
+            }
+        }
+        return matched;
+    }
+}
@@ -28,8 +28,8 @@ import org.springframework.shell.Shell;
 import org.springframework.shell.boot.CompleterAutoConfiguration;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Extended completer adapter to be able to set complete attribute of proposal
@@ -76,10 +76,20 @@ public class ExtendedCompleterAdapter extends CompleterAutoConfiguration.Complet
      * See @{@link CompleterAutoConfiguration}
      */
     private static List<String> sanitizeInput(List<String> words) {
-        words = words.stream()
-                .map(s -> s.replaceAll("^\\n+|\\n+$", "")) // CR at beginning/end of line introduced by backslash continuation
-                .map(s -> s.replaceAll("\\n+", " ")) // CR in middle of word introduced by return inside a quoted string
-                .collect(Collectors.toList());
-        return words;
+        List<String> sanitized = null;
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            // most lines have no continuation: avoid regex replacements and copy on each completion
+            if (word.indexOf('\n') < 0) {
+                continue;
+            }
+            if (sanitized == null) {
+                sanitized = new ArrayList<>(words);
+            }
+            sanitized.set(i, word
+                    .replaceAll("^\\n+|\\n+$", "") // CR at beginning/end of line introduced by backslash continuation
+                    .replaceAll("\\n+", " ")); // CR in middle of word introduced by return inside a quoted string
+        }
+        return sanitized != null ? sanitized : words;
     }
 }
@@ -18,7 +18,6 @@ package com.github.fonimus.ssh.shell;
 
 import org.springframework.shell.Input;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -31,9 +30,11 @@ public class ExtendedInput implements Input {
 
     public static final String ARROW = ">";
 
-    public static final List<String> KEY_CHARS = Arrays.asList(PIPE, ARROW);
+    public static final String DOUBLE_ARROW = ">>";
 
-    private final Input base;
+    public static final List<String> KEY_CHARS = Arrays.asList(PIPE, ARROW, DOUBLE_ARROW);
+
+    private final CommandPipeline pipeline;
 
     /**
      * Default constructor
@@ -41,45 +42,32 @@ public class ExtendedInput implements Input {
      * @param base input base
      */
     public ExtendedInput(Input base) {
-        this.base = base;
+        this(CommandPipeline.of(base));
     }
 
-    private static boolean isKeyCharInLine(String str) {
-        for (String key : KEY_CHARS) {
-            if (str.contains(key)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Constructor
+     *
+     * @param pipeline compiled command line
+     */
+    public ExtendedInput(CommandPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @return compiled command line
+     */
+    public CommandPipeline getPipeline() {
+        return pipeline;
     }
 
     @Override
     public String rawText() {
-        String raw = base.rawText();
-        return raw != null && isKeyCharInLine(raw) ? raw.substring(0, firstIndexOfKeyChar(raw)) : raw;
+        return pipeline.getRawText();
     }
 
     @Override
     public List<String> words() {
-        List<String> newList = new ArrayList<>();
-        for (String word : base.words()) {
-            if (KEY_CHARS.contains(word)) {
-                return newList;
-            }
-            newList.add(word);
-        }
-        return newList;
-    }
-
-    private int firstIndexOfKeyChar(String str) {
-        int firstIndex = Integer.MAX_VALUE;
-        for (String key : KEY_CHARS) {
-            int keyIndex = str.indexOf(key);
-            if (keyIndex > -1 && keyIndex < firstIndex) {
-                firstIndex = keyIndex;
-            }
-        }
-        return firstIndex;
+        return pipeline.getWords();
     }
 }
-
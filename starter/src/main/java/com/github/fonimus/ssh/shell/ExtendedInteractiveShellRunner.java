@@ -12,8 +12,6 @@ import org.springframework.shell.jline.InteractiveShellRunner;
 import org.springframework.shell.jline.PromptProvider;
 import org.springframework.stereotype.Component;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
-
 /**
  * Used to clear thread context from post processors and also creates instance of InteractiveShellRunner
  * so that ThrowableResultHandler#shouldHandle() returns true
@@ -56,7 +54,7 @@ public class ExtendedInteractiveShellRunner extends InteractiveShellRunner {
 
         @Override
         public Input readInput() {
-            SshContext ctx = SSH_THREAD_CONTEXT.get();
+            SshContext ctx = SshContextHolder.get();
             if (ctx != null) {
                 ctx.getPostProcessorsList().clear();
             }
@@ -17,13 +17,19 @@
 package com.github.fonimus.ssh.shell;
 
 import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
-import com.github.fonimus.ssh.shell.postprocess.PostProcessorObject;
-import com.github.fonimus.ssh.shell.postprocess.provided.SavePostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.jline.terminal.Terminal;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.shell.*;
 import org.springframework.shell.command.CommandCatalog;
+import org.springframework.shell.command.CommandOption;
+import org.springframework.shell.command.CommandRegistration;
+import org.springframework.shell.completion.CompletionResolver;
 import org.springframework.shell.context.ShellContext;
 import org.springframework.shell.exit.ExitCodeMappings;
 import org.springframework.stereotype.Component;
@@ -31,11 +37,7 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
-import static com.github.fonimus.ssh.shell.ExtendedInput.*;
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
+import java.util.Map;
 
 /**
  * Extended shell which takes in account special characters
@@ -43,10 +45,14 @@ import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CON
 @Slf4j
 @Component
 @Primary
-public class ExtendedShell extends Shell {
+public class ExtendedShell extends Shell implements SmartInitializingSingleton {
 
     private final ResultHandlerService resultHandlerService;
-    private final List<String> postProcessorNames = new ArrayList<>();
+    private final CommandCatalog commandRegistry;
+    private final PostProcessorRegistry postProcessorRegistry;
+    private List<CompletionResolver> completionResolvers = new ArrayList<>();
+    private SshShellCompletionCache completionCache;
+    private volatile CompletionCatalog completionCatalog;
 
     /**
      * Extended shell to handle post processors
@@ -57,17 +63,38 @@ public class ExtendedShell extends Shell {
      * @param shellContext         shell context
      * @param exitCodeMappings     exit code mappipngs
      * @param postProcessors       post processors
+     * @deprecated use constructor with shared {@link PostProcessorRegistry}
      */
+    @Deprecated
     protected ExtendedShell(
             ResultHandlerService resultHandlerService, CommandCatalog commandRegistry,
             Terminal terminal, ShellContext shellContext, ExitCodeMappings exitCodeMappings,
             List<PostProcessor<?, ?>> postProcessors
+    ) {
+        this(resultHandlerService, commandRegistry, terminal, shellContext, exitCodeMappings,
+                new PostProcessorRegistry(postProcessors));
+    }
+
+    /**
+     * Extended shell to handle post processors
+     *
+     * @param resultHandlerService  result handler service
+     * @param commandRegistry       command registry
+     * @param terminal              terminal
+     * @param shellContext          shell context
+     * @param exitCodeMappings      exit code mappipngs
+     * @param postProcessorRegistry post processor registry, shared with result handler service
+     */
+    @Autowired
+    protected ExtendedShell(
+            ResultHandlerService resultHandlerService, CommandCatalog commandRegistry,
+            Terminal terminal, ShellContext shellContext, ExitCodeMappings exitCodeMappings,
+            PostProcessorRegistry postProcessorRegistry
     ) {
         super(resultHandlerService, commandRegistry, terminal, shellContext, exitCodeMappings);
         this.resultHandlerService = resultHandlerService;
-        if (postProcessors != null) {
-            this.postProcessorNames.addAll(postProcessors.stream().map(PostProcessor::getName).toList());
-        }
+        this.commandRegistry = commandRegistry;
+        this.postProcessorRegistry = postProcessorRegistry;
     }
 
     @Override
@@ -99,67 +126,165 @@ public class ExtendedShell extends Shell {
                 break;
             }
 
-            result = evaluate(input);
-            if (result != NO_INPUT && !(result instanceof ExitRequest)) {
-                resultHandlerService.handle(result);
-            }
+            result = execute(input);
+        }
+    }
+
+    /**
+     * Evaluate input and handle its result
+     *
+     * @param input input
+     * @return evaluation result
+     */
+    public Object execute(Input input) {
+        Object result = evaluate(input);
+        if (result != NO_INPUT && !(result instanceof ExitRequest)) {
+            resultHandlerService.handle(result);
         }
+        return result;
     }
 
     @Override
     public Object evaluate(Input input) {
-        List<String> words = input.words();
-        Object toReturn = super.evaluate(new ExtendedInput(input));
-        SshContext ctx = SSH_THREAD_CONTEXT.get();
+        CommandPipeline pipeline = CommandPipeline.of(input);
+        SshContext ctx = SshContextHolder.get();
+        if (pipeline.hasPostProcessors()) {
+            // fail before running command if post processors chain cannot apply
+            String error = postProcessorRegistry.validate(pipeline.getPostProcessors());
+            if (error != null) {
+                if (ctx != null && !ctx.isBackground()) {
+                    ctx.getPostProcessorsList().clear();
+                }
+                return new PostProcessorException(error);
+            }
+        }
+        Object toReturn = super.evaluate(new ExtendedInput(pipeline));
         if (ctx != null) {
             if (!ctx.isBackground()) {
                 // clear potential post processors from previous commands
                 ctx.getPostProcessorsList().clear();
             }
-            if (isKeyCharInList(words)) {
-                List<Integer> indexes =
-                        IntStream.range(0, words.size()).filter(i -> KEY_CHARS.contains(words.get(i))).boxed().toList();
-                for (Integer index : indexes) {
-                    if (words.size() > index + 1) {
-                        String keyChar = words.get(index);
-                        if (keyChar.equals(PIPE)) {
-                            String postProcessorName = words.get(index + 1);
-                            int currentIndex = 2;
-                            String word = words.size() > index + currentIndex ? words.get(index + currentIndex) : null;
-                            List<String> params = new ArrayList<>();
-                            while (word != null && !KEY_CHARS.contains(word)) {
-                                params.add(word);
-                                currentIndex++;
-                                word = words.size() > index + currentIndex ? words.get(index + currentIndex) : null;
-                            }
-                            ctx.getPostProcessorsList().add(new PostProcessorObject(postProcessorName, params));
-                        } else if (keyChar.equals(ARROW)) {
-                            ctx.getPostProcessorsList().add(new PostProcessorObject(SavePostProcessor.SAVE,
-                                    Collections.singletonList(words.get(index + 1))));
-                        }
-                    }
-                }
+            if (pipeline.hasPostProcessors()) {
+                ctx.getPostProcessorsList().addAll(pipeline.getPostProcessors());
                 LOGGER.debug("Found {} post processors", ctx.getPostProcessorsList().size());
             }
         }
         return toReturn;
     }
 
+    @Override
+    @Autowired
+    public void setCompletionResolvers(List<CompletionResolver> resolvers) {
+        super.setCompletionResolvers(resolvers);
+        List<CompletionResolver> sorted = new ArrayList<>(resolvers);
+        AnnotationAwareOrderComparator.sort(sorted);
+        this.completionResolvers = sorted;
+    }
+
+    /**
+     * Set cache running value providers with a time budget, they are called directly if not set
+     *
+     * @param completionCache completion cache
+     */
+    @Autowired(required = false)
+    public void setCompletionCache(SshShellCompletionCache completionCache) {
+        this.completionCache = completionCache;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        refreshCompletionCatalog();
+    }
+
+    /**
+     * Rebuild commands index used for completion (also done on completion when registered commands changed)
+     */
+    public void refreshCompletionCatalog() {
+        refreshCompletionCatalog(commandRegistry.getRegistrations());
+    }
+
+    private CompletionCatalog refreshCompletionCatalog(Map<String, CommandRegistration> registrations) {
+        CompletionCatalog catalog = CompletionCatalog.of(registrations);
+        this.completionCatalog = catalog;
+        LOGGER.debug("{} commands indexed for completion", catalog.size());
+        return catalog;
+    }
+
     @Override
     public List<CompletionProposal> complete(CompletionContext context) {
-        if (context.getWords().contains("|")) {
-            return postProcessorNames.stream().map(CompletionProposal::new).collect(Collectors.toList());
+        List<String> words = context.getWords();
+        int wordIndex = context.getWordIndex();
+        int firstKey = -1;
+        int lastKey = -1;
+        for (int i = 0; i < words.size(); i++) {
+            if (CommandPipeline.isKey(words.get(i))) {
+                if (firstKey < 0) {
+                    firstKey = i;
+                }
+                if (i < wordIndex) {
+                    lastKey = i;
+                }
+            }
+        }
+        if (lastKey >= 0) {
+            return completeStage(context, lastKey);
+        }
+        if (firstKey >= 0) {
+            if (firstKey <= wordIndex) {
+                return Collections.emptyList();
+            }
+            // post processors after cursor do not matter for command completion
+            context = new CompletionContext(words.subList(0, firstKey), wordIndex, context.getPosition(), null, null);
         }
-        return super.complete(context);
+        return completeCommand(context);
     }
 
-    private static boolean isKeyCharInList(List<String> strList) {
-        for (String key : KEY_CHARS) {
-            if (strList.contains(key)) {
-                return true;
+    private List<CompletionProposal> completeStage(CompletionContext context, int key) {
+        if (!ExtendedInput.PIPE.equals(context.getWords().get(key)) || context.getWordIndex() != key + 1) {
+            // post processor parameters, or redirection target
+            return Collections.emptyList();
+        }
+        String prefix = context.currentWordUpToCursor();
+        List<CompletionProposal> proposals = new ArrayList<>();
+        for (String name : postProcessorRegistry.names()) {
+            if (prefix == null || name.startsWith(prefix)) {
+                proposals.add(new CompletionProposal(name));
+            }
+        }
+        return proposals;
+    }
+
+    private List<CompletionProposal> completeCommand(CompletionContext context) {
+        Map<String, CommandRegistration> registrations = commandRegistry.getRegistrations();
+        CompletionCatalog catalog = completionCatalog;
+        if (catalog == null || !catalog.isUpToDate(registrations)) {
+            catalog = refreshCompletionCatalog(registrations);
+        }
+        String prefix = context.upToCursor();
+        List<CompletionProposal> candidates = new ArrayList<>(catalog.commandsStartingWith(prefix));
+        String command = catalog.longestCommand(prefix);
+        if (command == null) {
+            return candidates;
+        }
+        CommandRegistration registration = catalog.registration(command);
+        CompletionContext argsContext = context.drop(command.split(" ").length).commandRegistration(registration);
+        for (CompletionResolver resolver : completionResolvers) {
+            candidates.addAll(resolver.apply(argsContext));
+        }
+        // complete value of option given by previous word
+        List<String> args = argsContext.getWords();
+        int argIndex = argsContext.getWordIndex();
+        if (argIndex > 0 && argIndex < args.size()) {
+            for (CommandOption option : catalog.matchOptions(command, args.get(argIndex - 1))) {
+                if (option.getCompletion() == null) {
+                    continue;
+                }
+                CompletionContext optionContext = argsContext.commandOption(option);
+                candidates.addAll(completionCache != null ? completionCache.complete(command, option, optionContext)
+                        : option.getCompletion().apply(optionContext));
             }
         }
-        return false;
+        return candidates;
     }
 
     /**
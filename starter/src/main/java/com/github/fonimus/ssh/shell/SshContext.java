@@ -18,8 +18,10 @@ package com.github.fonimus.ssh.shell;
 
 import com.github.fonimus.ssh.shell.auth.SshAuthentication;
 import com.github.fonimus.ssh.shell.postprocess.PostProcessorObject;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.sshd.server.Environment;
 import org.apache.sshd.server.session.ServerSession;
 import org.jline.reader.LineReader;
@@ -27,10 +29,13 @@ import org.jline.terminal.Terminal;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Ssh context to hold terminal, exit callback and thread per thread
  */
+@Slf4j
 @Getter
 public class SshContext {
 
@@ -47,8 +52,14 @@ public class SshContext {
     @Setter
     private boolean background;
 
+    @Setter
+    private boolean batch;
+
     private long backgroundCount = 0;
 
+    @Getter(AccessLevel.NONE)
+    private final Map<Object, Runnable> closeHandlers = new ConcurrentHashMap<>();
+
     /**
      * Default empty constructor
      */
@@ -104,4 +115,31 @@ public class SshContext {
     public void incrementBackgroundCount() {
         this.backgroundCount++;
     }
+
+    /**
+     * Register handler called when context ends (session or background script), only once per key
+     *
+     * @param key     handler key
+     * @param handler handler
+     */
+    public void onClose(Object key, Runnable handler) {
+        closeHandlers.putIfAbsent(key, handler);
+    }
+
+    /**
+     * Call close handlers, when session or background script ends
+     */
+    public void close() {
+        for (Object key : closeHandlers.keySet()) {
+            Runnable handler = closeHandlers.remove(key);
+            if (handler == null) {
+                continue;
+            }
+            try {
+                handler.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to run context close handler: {}", e.getMessage(), e);
+            }
+        }
+    }
 }
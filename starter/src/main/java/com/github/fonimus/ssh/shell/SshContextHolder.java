@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>Holder of current ssh context</p>
+ * <p>Context is bound once per session (or background task) with {@link #call(SshContext, Callable)}: it uses a
+ * scoped value when available (jdk 25+), and a thread local otherwise. Context is not inherited by threads started
+ * from a session, which could be pooled and outlive it: tasks handed to other threads should be wrapped with
+ * {@link #wrap(Runnable)}.</p>
+ */
+@Slf4j
+public final class SshContextHolder {
+
+    /**
+     * Thread context, used when scoped values are not available (or set directly by {@link #set(SshContext)})
+     */
+    static final ThreadLocal<SshContext> THREAD_CONTEXT = new ThreadLocal<>();
+
+    private static final MethodHandle SCOPED_GET;
+
+    private static final MethodHandle SCOPED_WHERE;
+
+    private static final MethodHandle SCOPED_RUN;
+
+    static {
+        MethodHandle get = null;
+        MethodHandle where = null;
+        MethodHandle run = null;
+        // scoped values are resolved by reflection as this library still targets jdk 17, and only used once final
+        if (Runtime.version().feature() >= 25) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+                Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+                Object scopedValue = scopedValueClass.getMethod("newInstance").invoke(null);
+                MethodHandle isBound = lookup.findVirtual(scopedValueClass, "isBound",
+                        MethodType.methodType(boolean.class)).bindTo(scopedValue);
+                MethodHandle value = lookup.findVirtual(scopedValueClass, "get",
+                        MethodType.methodType(Object.class)).bindTo(scopedValue);
+                get = MethodHandles.guardWithTest(isBound, value, MethodHandles.constant(Object.class, null))
+                        .asType(MethodType.methodType(SshContext.class));
+                where = lookup.findStatic(scopedValueClass, "where",
+                        MethodType.methodType(carrierClass, scopedValueClass, Object.class)).bindTo(scopedValue);
+                run = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class));
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                LOGGER.debug("Scoped values not available: {}", e.toString());
+                get = null;
+                where = null;
+                run = null;
+            }
+        }
+        SCOPED_GET = get;
+        SCOPED_WHERE = where;
+        SCOPED_RUN = run;
+    }
+
+    private SshContextHolder() {
+        // static holder
+    }
+
+    /**
+     * @return true if context is held in a scoped value
+     */
+    public static boolean isScoped() {
+        return SCOPED_GET != null;
+    }
+
+    /**
+     * Get current ssh context
+     *
+     * @return current context, or null if none
+     */
+    public static SshContext get() {
+        if (SCOPED_GET != null) {
+            SshContext ctx;
+            try {
+                ctx = (SshContext) SCOPED_GET.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to get ssh context", e);
+            }
+            if (ctx != null) {
+                return ctx;
+            }
+        }
+        return THREAD_CONTEXT.get();
+    }
+
+    /**
+     * Set context of current thread, prefer {@link #call(SshContext, Callable)} which also restores previous one
+     *
+     * @param ctx ssh context
+     */
+    public static void set(SshContext ctx) {
+        THREAD_CONTEXT.set(ctx);
+    }
+
+    /**
+     * Remove context of current thread
+     */
+    public static void remove() {
+        THREAD_CONTEXT.remove();
+    }
+
+    /**
+     * Run task with given context bound
+     *
+     * @param ctx  ssh context
+     * @param task task to run
+     * @param <T>  result type
+     * @return task result
+     * @throws Exception if task fails
+     */
+    public static <T> T call(SshContext ctx, Callable<T> task) throws Exception {
+        if (SCOPED_RUN != null) {
+            return callScoped(ctx, task);
+        }
+        SshContext previous = THREAD_CONTEXT.get();
+        THREAD_CONTEXT.set(ctx);
+        try {
+            return task.call();
+        } finally {
+            if (previous != null) {
+                THREAD_CONTEXT.set(previous);
+            } else {
+                THREAD_CONTEXT.remove();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T callScoped(SshContext ctx, Callable<T> task) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        Runnable runnable = () -> {
+            try {
+                result[0] = task.call();
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        };
+        try {
+            SCOPED_RUN.invoke(SCOPED_WHERE.invoke(ctx), runnable);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to bind ssh context", e);
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return (T) result[0];
+    }
+
+    /**
+     * Wrap task so that it runs with current context, wherever it is executed
+     *
+     * @param task task to wrap
+     * @return wrapped task, or task itself if no current context
+     */
+    public static Runnable wrap(Runnable task) {
+        SshContext ctx = get();
+        if (ctx == null) {
+            return task;
+        }
+        return () -> {
+            try {
+                call(ctx, () -> {
+                    task.run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // runnable cannot throw checked exceptions
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * Wrap task so that it runs with current context, wherever it is executed
+     *
+     * @param task task to wrap
+     * @param <T>  result type
+     * @return wrapped task, or task itself if no current context
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        SshContext ctx = get();
+        if (ctx == null) {
+            return task;
+        }
+        return () -> call(ctx, task);
+    }
+}
@@ -25,9 +25,13 @@ import java.io.OutputStream;
 
 /**
  * Ssh io
+ *
+ * @deprecated streams are held by the command created for each channel, see
+ * {@link SshShellCommandFactory#createShell(org.apache.sshd.server.channel.ChannelSession)}
  */
 @Getter
 @Setter
+@Deprecated
 public class SshIO {
 
     private InputStream is;
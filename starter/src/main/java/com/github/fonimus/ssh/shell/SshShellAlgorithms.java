@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.NamedResource;
+import org.apache.sshd.common.OptionalFeature;
+import org.apache.sshd.common.cipher.Cipher;
+import org.apache.sshd.common.cipher.BuiltinCiphers;
+import org.apache.sshd.common.compression.BuiltinCompressions;
+import org.apache.sshd.common.compression.Compression;
+import org.apache.sshd.common.kex.BuiltinDHFactories;
+import org.apache.sshd.common.mac.BuiltinMacs;
+import org.apache.sshd.common.mac.Mac;
+import org.apache.sshd.server.ServerBuilder;
+import org.apache.sshd.server.SshServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.sshd.common.cipher.BuiltinCiphers.*;
+import static org.apache.sshd.common.compression.BuiltinCompressions.delayedZlib;
+import static org.apache.sshd.common.compression.BuiltinCompressions.none;
+import static org.apache.sshd.common.compression.BuiltinCompressions.zlib;
+import static org.apache.sshd.common.kex.BuiltinDHFactories.*;
+import static org.apache.sshd.common.mac.BuiltinMacs.*;
+
+/**
+ * Ssh server algorithms profiles
+ * <p>Unsupported algorithms in current jvm are ignored</p>
+ */
+@Slf4j
+final class SshShellAlgorithms {
+
+    private SshShellAlgorithms() {
+        // private constructor
+    }
+
+    /**
+     * Set cipher, mac, key exchange and compression factories of given profile
+     *
+     * @param server    ssh server
+     * @param profile   algorithms profile
+     * @param allowSha1 whether sha1 key exchanges and macs are added to compat profile
+     */
+    static void apply(SshServer server, SshShellProperties.AlgorithmsProfile profile, boolean allowSha1) {
+        switch (profile) {
+            case throughput -> apply(server,
+                    List.of(aes128gcm, aes256gcm, cc20p1305_openssh, aes128ctr, aes256ctr),
+                    List.of(hmacsha256etm, hmacsha512etm, hmacsha256, hmacsha512),
+                    List.of(curve25519, curve25519_libssh, ecdhp256, ecdhp384, ecdhp521, dhg16_512, dhg14_256),
+                    List.of(delayedZlib, zlib, none));
+            case low_cpu -> apply(server,
+                    List.of(aes128gcm, aes128ctr, cc20p1305_openssh),
+                    List.of(hmacsha256etm, hmacsha256),
+                    List.of(curve25519, curve25519_libssh, ecdhp256),
+                    List.of(none));
+            case compat -> {
+                List<BuiltinMacs> macs = new ArrayList<>(
+                        List.of(hmacsha256etm, hmacsha512etm, hmacsha256, hmacsha512));
+                List<BuiltinDHFactories> kex = new ArrayList<>(List.of(curve25519, curve25519_libssh, curve448,
+                        ecdhp256, ecdhp384, ecdhp521, dhgex256, dhg18_512, dhg17_512, dhg16_512, dhg15_512, dhg14_256));
+                if (allowSha1) {
+                    LOGGER.warn("Sha1 key exchanges and macs are offered to ssh clients, they are weak and should only be "
+                            + "allowed for clients which support nothing else");
+                    macs.addAll(List.of(hmacsha1etm, hmacsha1));
+                    kex.addAll(sha1KeyExchanges());
+                }
+                apply(server,
+                        List.of(cc20p1305_openssh, aes128ctr, aes192ctr, aes256ctr, aes128gcm, aes256gcm,
+                                aes128cbc, aes192cbc, aes256cbc),
+                        macs, kex, List.of(none, delayedZlib, zlib));
+            }
+            default -> {
+                // keep sshd defaults
+            }
+        }
+        if (allowSha1 && profile != SshShellProperties.AlgorithmsProfile.compat) {
+            LOGGER.info("Sha1 algorithms are only added to compat profile, ignored for [{}]", profile);
+        }
+    }
+
+    /**
+     * Sha1 diffie-hellman key exchanges are deprecated by sshd, but still the only ones of some old clients: they are
+     * only offered on explicit opt-in (group1 is never offered)
+     *
+     * @return sha1 key exchanges
+     */
+    @SuppressWarnings("deprecation")
+    private static List<BuiltinDHFactories> sha1KeyExchanges() {
+        return List.of(dhgex, dhg14);
+    }
+
+    private static void apply(SshServer server, List<BuiltinCiphers> ciphers, List<BuiltinMacs> macs,
+                              List<BuiltinDHFactories> kex, List<BuiltinCompressions> compressions) {
+        List<NamedFactory<Cipher>> cipherFactories = supported(ciphers);
+        List<NamedFactory<Mac>> macFactories = supported(macs);
+        List<NamedFactory<Compression>> compressionFactories = supported(compressions);
+        server.setCipherFactories(cipherFactories);
+        server.setMacFactories(macFactories);
+        server.setKeyExchangeFactories(NamedFactory.setUpTransformedFactories(false, kex, ServerBuilder.DH2KEX));
+        server.setCompressionFactories(compressionFactories);
+        LOGGER.debug("Ssh server algorithms: ciphers={}, macs={}, kex={}, compressions={}",
+                NamedResource.getNames(server.getCipherFactories()), NamedResource.getNames(server.getMacFactories()),
+                NamedResource.getNames(server.getKeyExchangeFactories()),
+                NamedResource.getNames(server.getCompressionFactories()));
+    }
+
+    private static <T, E extends NamedFactory<T> & OptionalFeature> List<NamedFactory<T>> supported(List<E> builtins) {
+        List<NamedFactory<T>> factories = new ArrayList<>();
+        for (E builtin : builtins) {
+            if (builtin.isSupported()) {
+                factories.add(builtin);
+            }
+        }
+        return factories;
+    }
+}
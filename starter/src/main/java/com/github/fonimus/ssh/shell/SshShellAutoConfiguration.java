@@ -22,6 +22,11 @@ import com.github.fonimus.ssh.shell.auth.SshShellPasswordAuthenticationProvider;
 import com.github.fonimus.ssh.shell.auth.SshShellSecurityAuthenticationProvider;
 import com.github.fonimus.ssh.shell.listeners.SshShellListener;
 import com.github.fonimus.ssh.shell.listeners.SshShellListenerService;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionLimiter;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionMetrics;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionRegistry;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorRegistry;
 import com.github.fonimus.ssh.shell.postprocess.provided.*;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -67,6 +72,8 @@ import static com.github.fonimus.ssh.shell.SshShellProperties.SSH_SHELL_PREFIX;
 @AutoConfigureAfter(value = {
         SpringShellAutoConfiguration.class, LineReaderAutoConfiguration.class
 }, name = {
+        // ssh shell task executor must not prevent default application task executor creation
+        "org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration",
         "org.springframework.boot.actuate.autoconfigure.audit.AuditEventsEndpointAutoConfiguration",
         "org.springframework.boot.actuate.autoconfigure.beans.BeansEndpointAutoConfiguration",
         "org.springframework.boot.actuate.autoconfigure.condition.ConditionsReportEndpointAutoConfiguration",
@@ -137,8 +144,13 @@ public class SshShellAutoConfiguration {
     }
 
     @Bean
-    public SavePostProcessor savePostProcessor() {
-        return new SavePostProcessor();
+    public FileSinkRegistry fileSinkRegistry(SshShellSessionExecutor sessionExecutor) {
+        return new FileSinkRegistry(properties.getSave(), sessionExecutor.getScheduler());
+    }
+
+    @Bean
+    public SavePostProcessor savePostProcessor(FileSinkRegistry fileSinkRegistry) {
+        return new SavePostProcessor(fileSinkRegistry);
     }
 
     @Bean
@@ -151,6 +163,53 @@ public class SshShellAutoConfiguration {
         return new HighlightPostProcessor();
     }
 
+    @Bean
+    public HeadPostProcessor headPostProcessor() {
+        return new HeadPostProcessor();
+    }
+
+    @Bean
+    public TailPostProcessor tailPostProcessor() {
+        return new TailPostProcessor();
+    }
+
+    @Bean
+    public CountPostProcessor countPostProcessor() {
+        return new CountPostProcessor();
+    }
+
+    @Bean
+    public SortPostProcessor sortPostProcessor() {
+        return new SortPostProcessor();
+    }
+
+    @Bean
+    public UniqPostProcessor uniqPostProcessor() {
+        return new UniqPostProcessor();
+    }
+
+    @Bean
+    public TopPostProcessor topPostProcessor() {
+        return new TopPostProcessor();
+    }
+
+    @Bean
+    public SelectPostProcessor selectPostProcessor() {
+        return new SelectPostProcessor();
+    }
+
+    /**
+     * Single post processor registry, shared by shell (command line validation) and result handler service
+     *
+     * @param postProcessors post processors
+     * @return post processor registry
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public PostProcessorRegistry postProcessorRegistry(List<PostProcessor<?, ?>> postProcessors) {
+        return new PostProcessorRegistry(postProcessors);
+    }
+
     @Bean
     public SshShellHelper sshShellHelper() {
         return new SshShellHelper(properties.getConfirmationWords());
@@ -183,6 +242,20 @@ public class SshShellAutoConfiguration {
                 AttributedStyle.DEFAULT.foreground(properties.getPrompt().getColor().toJlineAttributedStyle()));
     }
 
+    /**
+     * Sessions metrics, only if micrometer is available
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class SshShellMetricsConfiguration {
+
+        @Bean
+        public SshShellSessionMetrics sshShellSessionMetrics(SshShellSessionLimiter sessionLimiter,
+                                                             SshShellSessionRegistry sessionRegistry) {
+            return new SshShellSessionMetrics(sessionLimiter, sessionRegistry);
+        }
+    }
+
     /**
      * Creates ssh listener service
      *
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import lombok.Getter;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Ssh shell command, created for each ssh channel so that streams are never shared between channels
+ */
+@Getter
+class SshShellCommand
+        implements Command {
+
+    private final SshShellCommandFactory factory;
+
+    private final String command;
+
+    private InputStream is;
+
+    private OutputStream os;
+
+    private ExitCallback ec;
+
+    /**
+     * Constructor
+     *
+     * @param factory command factory
+     * @param command command line of exec request, null for interactive shell
+     */
+    SshShellCommand(SshShellCommandFactory factory, String command) {
+        this.factory = factory;
+        this.command = command;
+    }
+
+    @Override
+    public void start(ChannelSession channelSession, org.apache.sshd.server.Environment sshEnv) {
+        factory.start(this, channelSession, sshEnv);
+    }
+
+    @Override
+    public void destroy(ChannelSession channelSession) {
+        factory.destroySession(channelSession);
+    }
+
+    @Override
+    public void setErrorStream(OutputStream errOS) {
+        // not used
+    }
+
+    @Override
+    public void setExitCallback(ExitCallback ec) {
+        this.ec = ec;
+    }
+
+    @Override
+    public void setInputStream(InputStream is) {
+        this.is = is;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream os) {
+        this.os = os;
+    }
+}
@@ -16,13 +16,20 @@
 
 package com.github.fonimus.ssh.shell;
 
+import com.github.fonimus.ssh.shell.auth.SshAuthentication;
 import com.github.fonimus.ssh.shell.listeners.SshShellListenerService;
+import com.github.fonimus.ssh.shell.manage.SshShellSession;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionLimitException;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionLimiter;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionRegistry;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.sshd.server.ExitCallback;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.command.CommandFactory;
+import org.apache.sshd.server.shell.ShellFactory;
 import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.springframework.boot.Banner;
@@ -31,16 +38,21 @@ import org.springframework.shell.Shell;
 import org.springframework.shell.jline.PromptProvider;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
+import static com.github.fonimus.ssh.shell.auth.SshShellAuthenticationProvider.AUTHENTICATION_ATTRIBUTE;
+
 /**
- * Ssh shell command implementation, which starts threads of SshShellRunnable
+ * Ssh shell command factory, creating one command per channel which runs SshShellRunnable on session executor
  *
  * @see SshShellRunnable
  */
@@ -48,9 +60,23 @@ import java.util.stream.Collectors;
 @Component
 @RequiredArgsConstructor
 public class SshShellCommandFactory
-        implements Command {
+        implements ShellFactory, CommandFactory, Command {
+
+    /**
+     * Thread context of ssh sessions
+     *
+     * @deprecated use {@link SshContextHolder}, which also handles scoped values and context propagation
+     */
+    @Deprecated
+    public static final ThreadLocal<SshContext> SSH_THREAD_CONTEXT = SshContextHolder.THREAD_CONTEXT;
 
-    public static final ThreadLocal<SshContext> SSH_THREAD_CONTEXT = ThreadLocal.withInitial(() -> null);
+    /**
+     * Streams of shared command, only used when this factory is itself set as ssh command
+     *
+     * @deprecated streams are held by the command created for each channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
+    public static final ThreadLocal<SshIO> SSH_IO_CONTEXT = ThreadLocal.withInitial(SshIO::new);
 
     @NonNull
     private final SshShellProperties properties;
@@ -68,54 +94,187 @@ public class SshShellCommandFactory
     private final PromptProvider promptProvider;
     @NonNull
     private Completer completer;
+    @NonNull
+    private final SshShellSessionExecutor sessionExecutor;
+    @NonNull
+    private final SshShellSessionLimiter sessionLimiter;
+    @NonNull
+    private final SshShellSessionRegistry sessionRegistry;
 
-    public static final ThreadLocal<SshIO> SSH_IO_CONTEXT = ThreadLocal.withInitial(SshIO::new);
+    private volatile String renderedBanner;
 
-    private final Map<ChannelSession, Thread> threads = new ConcurrentHashMap<>();
+    @Override
+    public Command createShell(ChannelSession channelSession) {
+        return new SshShellCommand(this, null);
+    }
+
+    @Override
+    public Command createCommand(ChannelSession channelSession, String command) {
+        return new SshShellCommand(this, command);
+    }
 
     /**
      * Start ssh session
      *
+     * @param command        ssh command holding channel streams
      * @param channelSession ssh channel session
      * @param sshEnv         ssh environment
      */
+    void start(SshShellCommand command, ChannelSession channelSession, org.apache.sshd.server.Environment sshEnv) {
+        SshShellSession session = sessionRegistry.register(channelSession, sessionUser(channelSession));
+        SshShellOutputStream output = new SshShellOutputStream(command.getOs(),
+                () -> channelSession.getRemoteWindow().getSize(), properties.getSessions().getOutput(),
+                sessionExecutor.getScheduler());
+        session.setOutput(output);
+        PromptProvider sessionPromptProvider = () -> {
+            sessionRegistry.firstPrompt(session);
+            flush(output);
+            return promptProvider.getPrompt();
+        };
+        SshShellRunnable runnable = new SshShellRunnable(
+                properties, shellListenerService, banner(),
+                shell, lineReader, sessionPromptProvider, completer,
+                channelSession, sshEnv, command.getIs(), output, command.getEc(), command.getCommand(), command);
+        try {
+            session.setTask(sessionExecutor.submit(() -> runWithinLimits(session, command, runnable)));
+        } catch (RejectedExecutionException e) {
+            sessionRegistry.unregister(channelSession);
+            LOGGER.warn("{}: unable to start session, no more thread available [{} session(s) currently active]",
+                    channelSession, sessionRegistry.size());
+            reject(command, "Too many ssh sessions currently active, please retry later");
+            return;
+        }
+        LOGGER.debug("{}: started [{} session(s) currently active]", channelSession, sessionRegistry.size());
+    }
+
+    /**
+     * Banner is rendered once, as it does not change between sessions
+     *
+     * @return rendered banner, empty if not displayed
+     */
+    private String banner() {
+        String result = renderedBanner;
+        if (result == null) {
+            result = "";
+            if (properties.isDisplayBanner() && shellBanner.isPresent()) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                shellBanner.get().printBanner(environment, SshShellRunnable.class,
+                        new PrintStream(baos, true, StandardCharsets.UTF_8));
+                result = baos.toString(StandardCharsets.UTF_8);
+            }
+            renderedBanner = result;
+        }
+        return result;
+    }
+
+    private static void flush(SshShellOutputStream output) {
+        try {
+            output.forceFlush();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to flush session output: {}", e.getMessage());
+        }
+    }
+
+    private void runWithinLimits(SshShellSession session, SshShellCommand command, Runnable runnable) {
+        try {
+            sessionLimiter.acquire(session.getUser());
+        } catch (SshShellSessionLimitException e) {
+            reject(command, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.debug("{}: interrupted while waiting for a session slot", session.getChannel());
+            return;
+        }
+        try {
+            session.running();
+            runnable.run();
+        } finally {
+            sessionLimiter.release(session.getUser());
+        }
+    }
+
+    private static String sessionUser(ChannelSession channelSession) {
+        Object authentication = channelSession.getSession().getIoSession().getAttribute(AUTHENTICATION_ATTRIBUTE);
+        if (authentication instanceof SshAuthentication sshAuthentication) {
+            return sshAuthentication.getName();
+        }
+        return channelSession.getSession().getUsername();
+    }
+
+    private static void reject(SshShellCommand command, String message) {
+        if (command.getOs() != null) {
+            try {
+                command.getOs().write((message + "\r\n").getBytes(StandardCharsets.UTF_8));
+                command.getOs().flush();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to write rejection message: {}", e.getMessage());
+            }
+        }
+        if (command.getEc() != null) {
+            command.getEc().onExit(1, message);
+        }
+    }
+
+    /**
+     * Start ssh session with streams of {@link #SSH_IO_CONTEXT}
+     *
+     * @param channelSession ssh channel session
+     * @param sshEnv         ssh environment
+     * @deprecated sshd should create a command per channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
     @Override
     public void start(ChannelSession channelSession, org.apache.sshd.server.Environment sshEnv) {
         SshIO sshIO = SSH_IO_CONTEXT.get();
-        Thread sshThread = new Thread(new ThreadGroup("ssh-shell"), new SshShellRunnable(
-                properties, shellListenerService, shellBanner.orElse(null),
-                shell, lineReader, promptProvider, completer, environment,
-                channelSession, sshEnv, this, sshIO.getIs(), sshIO.getOs(), sshIO.getEc()),
-                "ssh-session-" + System.nanoTime());
-        sshThread.start();
-        threads.put(channelSession, sshThread);
-        LOGGER.debug("{}: started [{} session(s) currently active]", channelSession, threads.size());
+        SshShellCommand command = new SshShellCommand(this, null);
+        command.setInputStream(sshIO.getIs());
+        command.setOutputStream(sshIO.getOs());
+        command.setExitCallback(sshIO.getEc());
+        start(command, channelSession, sshEnv);
     }
 
+    /**
+     * @param channelSession ssh channel session
+     * @deprecated sshd should create a command per channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
     @Override
     public void destroy(ChannelSession channelSession) {
-        Thread sshThread = threads.remove(channelSession);
-        if (sshThread != null) {
-            sshThread.interrupt();
-        }
-        LOGGER.debug("{}: destroyed [{} session(s) currently active]", channelSession, threads.size());
+        destroySession(channelSession);
     }
 
+    /**
+     * @deprecated sshd should create a command per channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
     @Override
     public void setErrorStream(OutputStream errOS) {
         // not used
     }
 
+    /**
+     * @deprecated sshd should create a command per channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
     @Override
     public void setExitCallback(ExitCallback ec) {
         SSH_IO_CONTEXT.get().setEc(ec);
     }
 
+    /**
+     * @deprecated sshd should create a command per channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
     @Override
     public void setInputStream(InputStream is) {
         SSH_IO_CONTEXT.get().setIs(is);
     }
 
+    /**
+     * @deprecated sshd should create a command per channel, see {@link #createShell(ChannelSession)}
+     */
+    @Deprecated
     @Override
     public void setOutputStream(OutputStream os) {
         SSH_IO_CONTEXT.get().setOs(os);
@@ -125,9 +284,31 @@ public class SshShellCommandFactory
      * List current sessions
      *
      * @return current sessions
+     * @deprecated use {@link SshShellSessionRegistry#sessions()}
      */
+    @Deprecated
     public Map<Long, ChannelSession> listSessions() {
-        return threads.keySet().stream()
-                .collect(Collectors.toMap(s -> s.getServerSession().getIoSession().getId(), Function.identity()));
+        return sessionRegistry.sessions().stream()
+                .collect(Collectors.toMap(SshShellSession::getId, SshShellSession::getChannel));
+    }
+
+    /**
+     * Destroy ssh session
+     *
+     * @param channelSession ssh channel session
+     */
+    void destroySession(ChannelSession channelSession) {
+        SshShellSession session = sessionRegistry.unregister(channelSession);
+        if (session != null) {
+            session.stop();
+            if (session.getOutput() != null) {
+                try {
+                    session.getOutput().release();
+                } catch (IOException e) {
+                    LOGGER.debug("{}: unable to release session output: {}", channelSession, e.getMessage());
+                }
+            }
+        }
+        LOGGER.debug("{}: destroyed [{} session(s) currently active]", channelSession, sessionRegistry.size());
     }
 }
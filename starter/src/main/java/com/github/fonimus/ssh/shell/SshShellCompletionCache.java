@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.CompletionContext;
+import org.springframework.shell.CompletionProposal;
+import org.springframework.shell.command.CommandOption;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * <p>Runs completion functions of command options (value providers) with a time budget</p>
+ * <p>Proposals are cached per session, option and word prefix: a provider slower than the budget keeps running in
+ * background, so that its proposals are available on next completion request instead of freezing the line
+ * editor</p>
+ */
+@Slf4j
+@Component
+public class SshShellCompletionCache {
+
+    private final ExecutorService executor;
+
+    private final long timeoutNanos;
+
+    private final long ttlNanos;
+
+    // lock instead of monitor so that waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Key, Entry> cache;
+
+    /**
+     * Constructor
+     *
+     * @param properties   ssh shell properties
+     * @param taskExecutor executor running value providers with the ssh context of the session
+     */
+    @Autowired
+    public SshShellCompletionCache(SshShellProperties properties, SshShellTaskExecutor taskExecutor) {
+        this(properties.getCompletion(), taskExecutor.asExecutorService());
+    }
+
+    SshShellCompletionCache(SshShellProperties.Completion completion, ExecutorService executor) {
+        this.executor = executor;
+        this.timeoutNanos = completion.getTimeout() != null ? completion.getTimeout().toNanos() : 0;
+        this.ttlNanos = completion.getCacheTtl() != null ? completion.getCacheTtl().toNanos() : 0;
+        int maxSize = Math.max(1, completion.getCacheSize());
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get proposals for value of given option
+     *
+     * @param command command name
+     * @param option  command option
+     * @param context completion context, with option set
+     * @return proposals, empty if they are not available within time budget
+     */
+    public List<CompletionProposal> complete(String command, CommandOption option, CompletionContext context) {
+        Function<CompletionContext, List<CompletionProposal>> completion = option.getCompletion();
+        if (completion == null) {
+            return Collections.emptyList();
+        }
+        if (ttlNanos <= 0 && timeoutNanos <= 0) {
+            return completion.apply(context);
+        }
+        String prefix = context.currentWordUpToCursor();
+        SshContext ctx = SshContextHolder.get();
+        Key key = new Key(ctx, command, optionName(option), prefix != null ? prefix : "");
+        long now = System.nanoTime();
+        Entry entry;
+        FutureTask<List<CompletionProposal>> inline = null;
+        lock.lock();
+        try {
+            entry = cache.get(key);
+            if (entry == null || now - entry.created > ttlNanos) {
+                Future<List<CompletionProposal>> future;
+                if (timeoutNanos > 0) {
+                    future = executor.submit(() -> completion.apply(context));
+                } else {
+                    inline = new FutureTask<>(() -> completion.apply(context));
+                    future = inline;
+                }
+                entry = new Entry(future, now);
+                if (ttlNanos > 0) {
+                    cache.put(key, entry);
+                    if (ctx != null) {
+                        ctx.onClose(this, () -> invalidate(ctx));
+                    }
+                } else {
+                    cache.remove(key);
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("No thread available to complete option [{}] of command [{}]", key.option, command);
+            return Collections.emptyList();
+        } finally {
+            lock.unlock();
+        }
+        if (inline != null) {
+            inline.run();
+        }
+        return await(key, entry);
+    }
+
+    private List<CompletionProposal> await(Key key, Entry entry) {
+        try {
+            List<CompletionProposal> proposals = timeoutNanos > 0 ?
+                    entry.future.get(timeoutNanos, TimeUnit.NANOSECONDS) : entry.future.get();
+            return proposals != null ? proposals : Collections.emptyList();
+        } catch (TimeoutException e) {
+            LOGGER.debug("Completion of option [{}] of command [{}] still running after {} ms", key.option,
+                    key.command, TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            LOGGER.debug("Unable to complete option [{}] of command [{}]", key.option, key.command, e);
+            lock.lock();
+            try {
+                cache.remove(key, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Remove cached proposals of given session
+     *
+     * @param ctx session context
+     */
+    void invalidate(SshContext ctx) {
+        lock.lock();
+        try {
+            cache.keySet().removeIf(key -> key.session == ctx);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of cached proposals lists
+     */
+    int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String optionName(CommandOption option) {
+        if (option.getLongNames().length > 0) {
+            return "--" + option.getLongNames()[0];
+        }
+        return option.getShortNames().length > 0 ? "-" + option.getShortNames()[0] : "";
+    }
+
+    private record Key(SshContext session, String command, String option, String prefix) {
+    }
+
+    private record Entry(Future<List<CompletionProposal>> future, long created) {
+    }
+}
@@ -20,7 +20,11 @@ import com.github.fonimus.ssh.shell.auth.SshShellPublicKeyAuthenticationProvider
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.Property;
+import org.apache.sshd.common.io.BuiltinIoServiceFactoryFactories;
+import org.apache.sshd.common.io.IoServiceFactoryFactory;
 import org.apache.sshd.common.util.io.IoUtils;
+import org.apache.sshd.core.CoreModuleProperties;
 import org.apache.sshd.server.SshServer;
 import org.apache.sshd.server.auth.password.PasswordAuthenticator;
 import org.apache.sshd.server.auth.pubkey.RejectAllPublickeyAuthenticator;
@@ -88,11 +92,55 @@ public class SshShellConfiguration {
             }
         }
         server.setPort(properties.getPort());
-        server.setShellFactory(channelSession -> shellCommandFactory);
-        server.setCommandFactory((channelSession, s) -> shellCommandFactory);
+        configureServer(server, properties.getServer());
+        server.setShellFactory(shellCommandFactory);
+        server.setCommandFactory(shellCommandFactory);
         return server;
     }
 
+    /**
+     * Apply server tuning properties, only set ones override sshd defaults
+     *
+     * @param server           ssh server
+     * @param serverProperties server properties
+     */
+    static void configureServer(SshServer server, SshShellProperties.Server serverProperties) {
+        SshShellAlgorithms.apply(server, serverProperties.getAlgorithms(), serverProperties.isAllowSha1());
+        if (serverProperties.getIoBackend() != SshShellProperties.IoBackend.auto) {
+            server.setIoServiceFactoryFactory(ioServiceFactoryFactory(serverProperties.getIoBackend()));
+        }
+        set(server, CoreModuleProperties.NIO_WORKERS, serverProperties.getNioWorkers());
+        set(server, CoreModuleProperties.WINDOW_SIZE, serverProperties.getWindowSize());
+        set(server, CoreModuleProperties.MAX_PACKET_SIZE, serverProperties.getMaxPacketSize());
+        set(server, CoreModuleProperties.NIO2_READ_BUFFER_SIZE, serverProperties.getNio2ReadBufferSize());
+        set(server, CoreModuleProperties.TCP_NODELAY, serverProperties.getTcpNoDelay());
+        set(server, CoreModuleProperties.SOCKET_KEEPALIVE, serverProperties.getKeepAlive());
+        set(server, CoreModuleProperties.SOCKET_BACKLOG, serverProperties.getBacklog());
+        set(server, CoreModuleProperties.SOCKET_SNDBUF, serverProperties.getSendBufferSize());
+        set(server, CoreModuleProperties.SOCKET_RCVBUF, serverProperties.getReceiveBufferSize());
+    }
+
+    private static <T> void set(SshServer server, Property<T> property, T value) {
+        if (value != null) {
+            property.set(server, value);
+            LOGGER.debug("Ssh server property [{}] set to: {}", property.getName(), value);
+        }
+    }
+
+    private static IoServiceFactoryFactory ioServiceFactoryFactory(SshShellProperties.IoBackend ioBackend) {
+        BuiltinIoServiceFactoryFactories factory = switch (ioBackend) {
+            case mina -> BuiltinIoServiceFactoryFactories.MINA;
+            case netty -> BuiltinIoServiceFactoryFactories.NETTY;
+            default -> BuiltinIoServiceFactoryFactories.NIO2;
+        };
+        try {
+            return factory.create();
+        } catch (RuntimeException | LinkageError e) {
+            throw new IllegalStateException("Unable to use ssh io backend [" + ioBackend +
+                    "], is sshd-" + ioBackend + " module in classpath ?", e);
+        }
+    }
+
     private File getFile(Resource authorizedPublicKeys) throws IOException {
         if ("file".equals(authorizedPublicKeys.getURL().getProtocol())) {
             return authorizedPublicKeys.getFile();
@@ -168,11 +168,19 @@ public class SshShellHelper {
      *
      * @param message message to print
      * @return response read from terminal
+     * @throws IllegalStateException in exec or batch mode, where no interactive input is available
      */
     public String read(String message) {
         LineReader lr = reader();
+        PrintWriter writer = lr.getTerminal().writer();
         if (message != null) {
-            lr.getTerminal().writer().println(message);
+            writer.println(message);
+        }
+        // pending output must reach client before waiting for its answer
+        writer.flush();
+        SshContext ctx = SshContextHolder.get();
+        if (!isLocalPrompt(ctx)) {
+            ctx.getSshShellRunnable().flush();
         }
         lr.readLine();
         if (lr.getTerminal() instanceof AbstractPosixTerminal) {
@@ -363,7 +371,8 @@ public class SshShellHelper {
         if (simpleTable.getTableBuilderListener() != null) {
             simpleTable.getTableBuilderListener().onBuilt(tableBuilder);
         }
-        if (simpleTable.isUseFullBorder()) {
+        SshContext ctx = SshContextHolder.get();
+        if (simpleTable.isUseFullBorder() && (ctx == null || !ctx.isBatch())) {
             tableBuilder.addFullBorder(simpleTable.getBorderStyle());
         }
         return tableBuilder.build();
@@ -387,7 +396,7 @@ public class SshShellHelper {
      * @return authentication from spring authentication, or null of not found in context
      */
     public SshAuthentication getAuthentication() {
-        return SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getAuthentication();
+        return SshContextHolder.get().getAuthentication();
     }
 
     /**
@@ -396,7 +405,7 @@ public class SshShellHelper {
      * @return current ssh session, or null if local prompt
      */
     public ServerSession getSshSession() {
-        return SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getSshSession();
+        return SshContextHolder.get().getSshSession();
     }
 
     /**
@@ -405,18 +414,18 @@ public class SshShellHelper {
      * @return current ssh environment, or null if local prompt
      */
     public Environment getSshEnvironment() {
-        return SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getSshEnv();
+        return SshContextHolder.get().getSshEnv();
     }
 
     /**
      * @return true if current command executed in a local prompt
      */
     public boolean isLocalPrompt() {
-        SshContext sshContext = SshShellCommandFactory.SSH_THREAD_CONTEXT.get();
-        if (sshContext == null) {
-            return true;
-        }
-        return sshContext.isLocalPrompt();
+        return isLocalPrompt(SshContextHolder.get());
+    }
+
+    private static boolean isLocalPrompt(SshContext ctx) {
+        return ctx == null || ctx.isLocalPrompt();
     }
 
     /**
@@ -426,11 +435,12 @@ public class SshShellHelper {
      * @return true if role found in authorities
      */
     public boolean checkAuthorities(List<String> authorizedRoles) {
-        if (isLocalPrompt()) {
+        SshContext ctx = SshContextHolder.get();
+        if (isLocalPrompt(ctx)) {
             LOGGER.debug("Not an ssh session -> local prompt -> giving all rights");
             return true;
         }
-        SshAuthentication auth = SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getAuthentication();
+        SshAuthentication auth = ctx.getAuthentication();
         return checkAuthorities(authorizedRoles, auth != null ? auth.getAuthorities() : null, false);
     }
 
@@ -519,6 +529,19 @@ public class SshShellHelper {
         return UUID.randomUUID().toString();
     }
 
+    /**
+     * Send pending output to ssh client, instead of waiting for buffer to be full or flush delay to be reached
+     */
+    public void flush() {
+        SshContext ctx = SshContextHolder.get();
+        if (isLocalPrompt(ctx)) {
+            defaultTerminal.writer().flush();
+        } else {
+            ctx.getTerminal().writer().flush();
+            ctx.getSshShellRunnable().flush();
+        }
+    }
+
     /**
      * Return the terminal writer
      *
@@ -532,6 +555,7 @@ public class SshShellHelper {
      * Return the terminal reader history
      *
      * @return history
+     * @throws IllegalStateException in exec or batch mode, where no history is kept
      */
     public History getHistory() {
         return new DefaultHistory(this.reader());
@@ -700,19 +724,23 @@ public class SshShellHelper {
     }
 
     private Terminal terminal() {
-        if (isLocalPrompt()) {
-            // local prompt
-            return defaultTerminal;
-        }
-        return SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getTerminal();
+        SshContext ctx = SshContextHolder.get();
+        // local prompt
+        return isLocalPrompt(ctx) ? defaultTerminal : ctx.getTerminal();
     }
 
     private LineReader reader() {
-        if (isLocalPrompt()) {
-            // local prompt
+        SshContext ctx = SshContextHolder.get();
+        // local prompt
+        if (isLocalPrompt(ctx)) {
             return defaultLineReader;
         }
-        return SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getLineReader();
+        if (ctx.getLineReader() == null) {
+            // exec request or batch mode: input is the command itself, there is no line editor to read from
+            throw new IllegalStateException("Interactive input not available in " + (ctx.isBatch() ? "batch" : "exec")
+                    + " mode");
+        }
+        return ctx.getLineReader();
     }
 
     /**
@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Session output stream, coalescing writes before sending them to ssh channel</p>
+ * <p>Terminal flushes are deferred up to flush delay, unless buffer is full: each channel flush sends a ssh packet,
+ * so line by line output would otherwise produce one packet per line. {@link #forceFlush()} sends pending bytes
+ * directly (on prompt, before reading input or on explicit helper flush)</p>
+ * <p>Bytes are only handed to the channel when client window allows it, so that a client which stops reading does
+ * not block the session thread in sshd. Bytes which cannot be sent are kept up to a maximum, then overflow policy
+ * applies: block until client reads (with timeout), truncate, or spill to a temporary file</p>
+ * <p>A session has at most one spill file, appended on each overflow and deleted once session is released (or after
+ * spill retention)</p>
+ */
+@Slf4j
+public class SshShellOutputStream
+        extends OutputStream {
+
+    private static final long WAIT_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long RETRY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final OutputStream delegate;
+
+    private final LongSupplier remoteWindow;
+
+    private final byte[] buffer;
+
+    private final long flushDelayNanos;
+
+    private final int maxPending;
+
+    private final SshShellProperties.OverflowPolicy overflowPolicy;
+
+    private final long blockTimeoutNanos;
+
+    private final Duration spillRetention;
+
+    private final ScheduledExecutorService scheduler;
+
+    // lock instead of monitor so that virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // written under lock, read without it by monitoring: session thread keeps lock while waiting for client window
+    private volatile int count;
+
+    private byte[] pending = new byte[0];
+
+    private int pendingStart;
+
+    private int pendingEnd;
+
+    private volatile int pendingBytes;
+
+    private boolean overflowing;
+
+    private long overflowBytes;
+
+    private volatile Path spillFile;
+
+    private OutputStream spill;
+
+    private long spillOffset;
+
+    private volatile long spilledBytes;
+
+    private boolean flushScheduled;
+
+    private boolean closed;
+
+    private final LongAdder writtenBytes = new LongAdder();
+
+    private final LongAdder droppedBytes = new LongAdder();
+
+    private final LongAdder flushes = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param delegate     channel output stream
+     * @param remoteWindow available client window in bytes, null if unlimited
+     * @param properties   output properties
+     * @param scheduler    scheduler used for deferred flushes
+     */
+    public SshShellOutputStream(OutputStream delegate, LongSupplier remoteWindow,
+                                SshShellProperties.Sessions.Output properties, ScheduledExecutorService scheduler) {
+        this.delegate = delegate;
+        this.remoteWindow = remoteWindow;
+        this.buffer = new byte[Math.max(1, properties.getBufferSize())];
+        this.flushDelayNanos = properties.getFlushDelay() != null ? properties.getFlushDelay().toNanos() : 0;
+        this.maxPending = Math.max(0, properties.getMaxPending());
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.blockTimeoutNanos = properties.getBlockTimeout() != null ? properties.getBlockTimeout().toNanos() : 0;
+        this.spillRetention = properties.getSpillRetention() != null ? properties.getSpillRetention() : Duration.ZERO;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            if (count == buffer.length) {
+                drain();
+            }
+            buffer[count++] = (byte) b;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            if (len >= buffer.length) {
+                // large write, no need to copy it
+                drain();
+                send(b, off, len);
+                return;
+            }
+            if (len > buffer.length - count) {
+                drain();
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deferred flush: pending bytes are sent at most after flush delay
+     *
+     * @throws IOException if flush delay is zero and channel cannot be written
+     */
+    @Override
+    public void flush() throws IOException {
+        if (flushDelayNanos <= 0 || scheduler == null) {
+            forceFlush();
+            return;
+        }
+        scheduleFlush(flushDelayNanos);
+    }
+
+    /**
+     * Send buffered bytes to ssh channel right now, as far as client window allows it
+     *
+     * @throws IOException if channel cannot be written
+     */
+    public void forceFlush() throws IOException {
+        lock.lock();
+        try {
+            doFlush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for all bytes to be sent to ssh channel
+     *
+     * @param timeout maximum time to wait
+     * @return true if all bytes were sent
+     * @throws IOException if channel cannot be written
+     */
+    public boolean awaitSent(Duration timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            lock.lock();
+            try {
+                doFlush();
+                if (closed || (count == 0 && pendingSize() == 0)) {
+                    return true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            park();
+        }
+    }
+
+    private void doFlush() throws IOException {
+        if (closed) {
+            return;
+        }
+        flushScheduled = false;
+        drain();
+        delegate.flush();
+        flushes.increment();
+        if (pendingSize() > 0 && scheduler != null) {
+            // client window is full, retry later
+            scheduleFlush(RETRY_DELAY_NANOS);
+        }
+    }
+
+    private void scheduleFlush(long delayNanos) {
+        lock.lock();
+        try {
+            if ((count == 0 && pendingSize() == 0) || flushScheduled || closed) {
+                return;
+            }
+            flushScheduled = true;
+        } finally {
+            lock.unlock();
+        }
+        scheduler.schedule(this::scheduledFlush, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void scheduledFlush() {
+        // never wait on scheduler thread, session thread may be blocked on a full client window
+        if (!lock.tryLock()) {
+            scheduler.schedule(this::scheduledFlush, RETRY_DELAY_NANOS, TimeUnit.NANOSECONDS);
+            return;
+        }
+        try {
+            doFlush();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to flush session output: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count > 0) {
+            int len = count;
+            count = 0;
+            send(buffer, 0, len);
+        } else {
+            sendPending();
+        }
+    }
+
+    /**
+     * Send bytes to channel, keeping the ones not fitting in client window
+     */
+    private void send(byte[] b, int off, int len) throws IOException {
+        sendPending();
+        if (pendingSize() == 0) {
+            int sent = (int) Math.min(len, available());
+            if (sent > 0) {
+                write(delegate, b, off, sent);
+                off += sent;
+                len -= sent;
+            }
+        }
+        if (len > 0) {
+            keep(b, off, len);
+        }
+    }
+
+    private void sendPending() throws IOException {
+        int size = pendingSize();
+        if (size > 0) {
+            int sent = (int) Math.min(size, available());
+            if (sent > 0) {
+                write(delegate, pending, pendingStart, sent);
+                pendingStart += sent;
+            }
+            if (pendingSize() == 0) {
+                pendingStart = 0;
+                pendingEnd = 0;
+                endOverflow();
+            }
+            pendingBytes = pendingSize();
+        }
+    }
+
+    private void write(OutputStream os, byte[] b, int off, int len) throws IOException {
+        os.write(b, off, len);
+        writtenBytes.add(len);
+    }
+
+    private long available() {
+        return remoteWindow == null ? Long.MAX_VALUE : Math.max(0, remoteWindow.getAsLong());
+    }
+
+    private void keep(byte[] b, int off, int len) throws IOException {
+        if (overflowing) {
+            overflow(b, off, len);
+            return;
+        }
+        if (overflowPolicy == SshShellProperties.OverflowPolicy.block && pendingSize() + len > maxPending) {
+            if (waitForWindow(len)) {
+                send(b, off, len);
+                return;
+            }
+            LOGGER.warn("Ssh client did not read output for {} ms, truncating it", blockTimeoutNanos / 1_000_000);
+        }
+        int kept = Math.min(len, maxPending - pendingSize());
+        if (kept > 0) {
+            append(b, off, kept);
+        }
+        if (kept < len) {
+            startOverflow();
+            overflow(b, off + kept, len - kept);
+        }
+        if (scheduler != null) {
+            scheduleFlush(RETRY_DELAY_NANOS);
+        }
+    }
+
+    private boolean waitForWindow(int len) throws IOException {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (pendingSize() + len > maxPending) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            park();
+            sendPending();
+        }
+        return true;
+    }
+
+    private static void park() throws InterruptedIOException {
+        LockSupport.parkNanos(WAIT_STEP_NANOS);
+        if (Thread.interrupted()) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for ssh client to read output");
+        }
+    }
+
+    private void startOverflow() throws IOException {
+        overflowing = true;
+        overflowBytes = 0;
+        if (overflowPolicy == SshShellProperties.OverflowPolicy.spill) {
+            if (spillFile == null) {
+                spillFile = Files.createTempFile("ssh-shell-output-", ".log");
+                // fallback if session is never released (jvm stopped before retention)
+                spillFile.toFile().deleteOnExit();
+            }
+            spillOffset = spilledBytes;
+            spill = new BufferedOutputStream(Files.newOutputStream(spillFile, StandardOpenOption.APPEND));
+        }
+    }
+
+    private void overflow(byte[] b, int off, int len) throws IOException {
+        overflowBytes += len;
+        if (spill != null) {
+            spill.write(b, off, len);
+            spilledBytes += len;
+        } else {
+            droppedBytes.add(len);
+        }
+    }
+
+    /**
+     * Called once client has read all kept bytes: marker is written where output has been cut
+     */
+    private void endOverflow() throws IOException {
+        if (!overflowing) {
+            return;
+        }
+        overflowing = false;
+        String marker;
+        if (spill != null) {
+            spill.close();
+            spill = null;
+            marker = "\r\n[client too slow, " + overflowBytes + " bytes of output saved to " + spillFile
+                    + " at offset " + spillOffset + "]\r\n";
+        } else {
+            marker = "\r\n[client too slow, " + overflowBytes + " bytes of output dropped]\r\n";
+        }
+        LOGGER.info("Session output cut: {}", marker.trim());
+        byte[] bytes = marker.getBytes(StandardCharsets.UTF_8);
+        write(delegate, bytes, 0, bytes.length);
+    }
+
+    private void append(byte[] b, int off, int len) {
+        if (pendingEnd + len > pending.length) {
+            int size = pendingSize();
+            byte[] target = size + len > pending.length ? new byte[Math.max(size + len, pending.length * 2)] : pending;
+            System.arraycopy(pending, pendingStart, target, 0, size);
+            pending = target;
+            pendingStart = 0;
+            pendingEnd = size;
+        }
+        System.arraycopy(b, off, pending, pendingEnd, len);
+        pendingEnd += len;
+        pendingBytes = pendingSize();
+    }
+
+    private int pendingSize() {
+        return pendingEnd - pendingStart;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Session output stream closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                doFlush();
+            } finally {
+                closed = true;
+                try {
+                    release();
+                } finally {
+                    delegate.close();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release session resources: spill file is deleted, directly or after spill retention
+     *
+     * @throws IOException if spill file cannot be closed
+     */
+    public void release() throws IOException {
+        lock.lock();
+        try {
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+            Path file = spillFile;
+            if (file == null) {
+                return;
+            }
+            if (spillRetention.isZero() || spillRetention.isNegative() || scheduler == null) {
+                deleteSpill(file);
+            } else {
+                scheduler.schedule(() -> deleteSpill(file), spillRetention.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void deleteSpill(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete session output spill file [{}]: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Read spilled output back
+     *
+     * @param offset   offset in spill file
+     * @param maxBytes maximum number of bytes to read
+     * @return spilled bytes, empty if none
+     * @throws IOException if spill file cannot be read
+     */
+    public byte[] readSpilled(long offset, int maxBytes) throws IOException {
+        Path file = spillFile;
+        if (file == null || maxBytes <= 0) {
+            return new byte[0];
+        }
+        lock.lock();
+        try {
+            if (spill != null) {
+                // overflow still in progress
+                spill.flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (offset < 0 || offset >= raf.length()) {
+                return new byte[0];
+            }
+            byte[] bytes = new byte[(int) Math.min(maxBytes, raf.length() - offset)];
+            raf.seek(offset);
+            raf.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * @return number of bytes not sent to channel yet
+     */
+    public long getOutstandingBytes() {
+        return (long) count + pendingBytes;
+    }
+
+    /**
+     * @return number of bytes sent to channel
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    /**
+     * @return number of bytes dropped because client was not reading fast enough
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.sum();
+    }
+
+    /**
+     * @return file in which output has been spilled, null if none
+     */
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * @return number of bytes spilled to file because client was not reading fast enough
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * @return number of flushes sent to channel
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+}
@@ -25,6 +25,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.validation.annotation.Validated;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -112,6 +113,16 @@ public class SshShellProperties {
 
     private Commands commands = new Commands();
 
+    private Sessions sessions = new Sessions();
+
+    private Batch batch = new Batch();
+
+    private Server server = new Server();
+
+    private Save save = new Save();
+
+    private Completion completion = new Completion();
+
     public void setAuthorizedPublicKeysFile(File file) {
         this.authorizedPublicKeys = new FileSystemResource(file);
     }
@@ -128,6 +139,281 @@ public class SshShellProperties {
 
     }
 
+    /**
+     * Sessions configuration
+     */
+    @Data
+    public static class Sessions {
+
+        /**
+         * Executor running ssh sessions: 'virtual' threads on jdk 24+ when set to 'auto' (on jdk 21-23, virtual
+         * threads get pinned by jline blocking reads), platform threads otherwise
+         */
+        private SessionExecutorType executor = SessionExecutorType.auto;
+
+        /**
+         * Maximum number of platform threads, only used when virtual threads are not used
+         */
+        private int maxPlatformThreads = 100;
+
+        /**
+         * Maximum number of platform threads running tasks submitted by commands to SshShellTaskExecutor, only used
+         * when virtual threads are not used
+         */
+        private int maxTaskThreads = 16;
+
+        /**
+         * Maximum number of concurrent sessions, negative value means no limit
+         */
+        private int maxTotal = -1;
+
+        /**
+         * Maximum number of concurrent sessions per user, negative value means no limit
+         */
+        private int maxPerUser = -1;
+
+        /**
+         * Number of sessions allowed to wait for a free slot when a limit is reached, others are refused
+         */
+        private int queueSize = 0;
+
+        /**
+         * Maximum time to wait for a free slot before refusing session
+         */
+        private Duration queueTimeout = Duration.ofSeconds(30);
+
+        private Output output = new Output();
+
+        /**
+         * Session output configuration
+         */
+        @Data
+        public static class Output {
+
+            /**
+             * Output is coalesced up to this size before being sent to channel, in bytes
+             */
+            private int bufferSize = 16 * 1024;
+
+            /**
+             * Maximum time flushed output can be kept in buffer, zero to send it directly
+             */
+            private Duration flushDelay = Duration.ofMillis(10);
+
+            /**
+             * Maximum number of bytes kept for a client which does not read its output fast enough
+             */
+            private int maxPending = 1024 * 1024;
+
+            /**
+             * What to do with output once maximum pending bytes is reached
+             */
+            private OverflowPolicy overflowPolicy = OverflowPolicy.block;
+
+            /**
+             * Maximum time to wait for client when overflow policy is 'block', output is truncated afterwards
+             */
+            private Duration blockTimeout = Duration.ofSeconds(60);
+
+            /**
+             * How long spill file is kept once session is closed, zero to delete it right away
+             */
+            private Duration spillRetention = Duration.ZERO;
+        }
+    }
+
+    /**
+     * Session output overflow policy
+     */
+    public enum OverflowPolicy {
+        block, truncate, spill
+    }
+
+    /**
+     * Session executor type
+     */
+    public enum SessionExecutorType {
+        auto, virtual, platform
+    }
+
+    /**
+     * Batch mode configuration, used for shell channels opened without pty (ssh -T)
+     */
+    @Data
+    public static class Batch {
+
+        /**
+         * Read commands from input and write results without prompt, colors nor table borders
+         */
+        private boolean enable = true;
+
+        /**
+         * Default output format, can be overridden by client with SSH_SHELL_BATCH_FORMAT environment variable
+         */
+        private BatchFormat format = BatchFormat.text;
+
+        /**
+         * Line written after each result in text format, nothing if empty
+         */
+        private String delimiter = "";
+    }
+
+    /**
+     * Save post processor configuration (also used by '>' and '>>' redirections)
+     */
+    @Data
+    public static class Save {
+
+        /**
+         * Files are kept open for the whole session or background script, written through a buffer of this size,
+         * in bytes
+         */
+        private int bufferSize = 64 * 1024;
+
+        /**
+         * Buffered results of background scripts are flushed to files at this interval
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * File is rotated once it reaches this size, in bytes (compressed size for .gz and .zst files), zero to
+         * never rotate
+         */
+        private long maxFileSize = 0;
+
+        /**
+         * Number of rotated files kept (file.1, file.2...)
+         */
+        private int maxFiles = 5;
+    }
+
+    /**
+     * Completion configuration
+     */
+    @Data
+    public static class Completion {
+
+        /**
+         * Time given to value providers on each completion request, before returning without their proposals (they
+         * are still computed in background and cached for next request), zero to wait for them
+         */
+        private Duration timeout = Duration.ofMillis(100);
+
+        /**
+         * Value providers proposals are cached per session, option and word prefix for this duration, zero to disable
+         */
+        private Duration cacheTtl = Duration.ofSeconds(10);
+
+        /**
+         * Maximum number of cached proposals lists
+         */
+        private int cacheSize = 256;
+    }
+
+    /**
+     * Batch output format
+     */
+    public enum BatchFormat {
+        text, ndjson
+    }
+
+    /**
+     * Ssh server tuning, unset values keep sshd defaults
+     */
+    @Data
+    public static class Server {
+
+        /**
+         * I/O backend: 'auto' lets sshd choose (nio2 unless mina or netty module is found in classpath)
+         */
+        private IoBackend ioBackend = IoBackend.auto;
+
+        /**
+         * Cipher, mac, key exchange and compression negotiation profile
+         */
+        private AlgorithmsProfile algorithms = AlgorithmsProfile.defaults;
+
+        /**
+         * Offer sha1 key exchanges and macs in 'compat' profile (diffie-hellman-group14-sha1,
+         * diffie-hellman-group-exchange-sha1, hmac-sha1), only for old clients which support nothing else
+         */
+        private boolean allowSha1;
+
+        /**
+         * Number of nio worker threads (sshd default: available processors + 1)
+         */
+        private Integer nioWorkers;
+
+        /**
+         * Channel window size, in bytes
+         */
+        private Long windowSize;
+
+        /**
+         * Channel maximum packet size, in bytes
+         */
+        private Long maxPacketSize;
+
+        /**
+         * Read buffer size of nio2 backend, in bytes
+         */
+        private Integer nio2ReadBufferSize;
+
+        /**
+         * Socket TCP_NODELAY option
+         */
+        private Boolean tcpNoDelay;
+
+        /**
+         * Socket SO_KEEPALIVE option
+         */
+        private Boolean keepAlive;
+
+        /**
+         * Server socket backlog
+         */
+        private Integer backlog;
+
+        /**
+         * Socket send buffer size (SO_SNDBUF), in bytes
+         */
+        private Integer sendBufferSize;
+
+        /**
+         * Socket receive buffer size (SO_RCVBUF), in bytes
+         */
+        private Integer receiveBufferSize;
+    }
+
+    /**
+     * Sshd I/O backend
+     */
+    public enum IoBackend {
+        auto, nio2, mina, netty
+    }
+
+    /**
+     * Algorithms negotiation profile
+     */
+    public enum AlgorithmsProfile {
+        /**
+         * Sshd default algorithms
+         */
+        defaults,
+        /**
+         * Aead ciphers first (aes-gcm, chacha20-poly1305), compression allowed
+         */
+        throughput,
+        /**
+         * Cheapest modern algorithms, no compression
+         */
+        low_cpu,
+        /**
+         * Sshd defaults plus legacy algorithms for old clients (sha1 ones only if explicitly allowed)
+         */
+        compat
+    }
+
     /**
      * Commands configuration
      */
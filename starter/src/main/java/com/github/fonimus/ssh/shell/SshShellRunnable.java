@@ -19,6 +19,7 @@ package com.github.fonimus.ssh.shell;
 import com.github.fonimus.ssh.shell.auth.SshAuthentication;
 import com.github.fonimus.ssh.shell.auth.SshShellSecurityAuthenticationProvider;
 import com.github.fonimus.ssh.shell.listeners.SshShellListenerService;
+import com.github.fonimus.ssh.shell.postprocess.ExtendedResultHandlerService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.sshd.common.Factory;
@@ -31,12 +32,16 @@ import org.apache.sshd.server.session.ServerSession;
 import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.Parser;
+import org.jline.reader.SyntaxError;
 import org.jline.terminal.Attributes;
 import org.jline.terminal.Size;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
-import org.springframework.boot.Banner;
-import org.springframework.core.env.Environment;
+import org.jline.terminal.impl.DumbTerminal;
+import org.jline.utils.AttributedString;
+import org.springframework.shell.ExitRequest;
+import org.springframework.shell.Input;
 import org.springframework.shell.Shell;
 import org.springframework.shell.context.DefaultShellContext;
 import org.springframework.shell.jline.InteractiveShellRunner;
@@ -45,8 +50,10 @@ import org.springframework.shell.result.DefaultResultHandler;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
 
 /**
  * Runnable for ssh shell session
@@ -62,27 +69,57 @@ public class SshShellRunnable
 
     private static final String SSH_ENV_TERM = "TERM";
 
+    private static final String SSH_ENV_BATCH_FORMAT = "SSH_SHELL_BATCH_FORMAT";
+
+    private static final int NON_INTERACTIVE_COLUMNS = 200;
+
     private final SshShellProperties properties;
     private final SshShellListenerService shellListenerService;
-    private final Banner shellBanner;
+    private final String banner;
     private final Shell shell;
     private final LineReader lineReader;
     private final PromptProvider promptProvider;
     private final Completer completer;
-    private final Environment environment;
     private ChannelSession session;
     private final org.apache.sshd.server.Environment sshEnv;
-    private final SshShellCommandFactory sshShellCommandFactory;
     private final InputStream is;
-    private final OutputStream os;
+    private final SshShellOutputStream os;
     private final ExitCallback ec;
+    private final String command;
+    private final Command channelCommand;
+
+    /**
+     * @return ssh command of this session
+     * @deprecated sshd creates a command per channel, see {@link SshShellCommandFactory#createShell(ChannelSession)}
+     */
+    @Deprecated
+    @Override
+    public Command create() {
+        return channelCommand;
+    }
 
     /**
-     * Run ssh session
+     * Run ssh session, interactive or single command if one was sent with exec request
      */
     @Override
     public void run() {
         LOGGER.debug("{}: running...", session.toString());
+        try {
+            if (command != null) {
+                runCommand();
+            } else if (isBatch()) {
+                runBatch();
+            } else {
+                runInteractive();
+            }
+        } finally {
+            // session threads may be pooled, do not leak context to next session
+            SshContextHolder.remove();
+            ExtendedResultHandlerService.THREAD_CONTEXT.remove();
+        }
+    }
+
+    private void runInteractive() {
         TerminalBuilder terminalBuilder = TerminalBuilder.builder().system(false).streams(is, os);
         boolean sizeAvailable = false;
         if (sshEnv.getEnv().containsKey(SSH_ENV_COLUMNS) && sshEnv.getEnv().containsKey(SSH_ENV_LINES)) {
@@ -100,13 +137,10 @@ public class SshShellRunnable
                 }
             }
         }
-        if (sshEnv.getEnv().containsKey(SSH_ENV_LINES)) {
-            terminalBuilder.type(sshEnv.getEnv().get(SSH_ENV_TERM));
+        if (sshEnv.getEnv().containsKey(SSH_ENV_TERM)) {
+            terminalBuilder.type(SshShellUtils.terminalType(sshEnv.getEnv().get(SSH_ENV_TERM)));
         }
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             PrintStream ps = new PrintStream(baos, true, StandardCharsets.UTF_8);
-             Terminal terminal = terminalBuilder.build()
-        ) {
+        try (Terminal terminal = terminalBuilder.build()) {
 
             try {
                 Attributes attr = terminal.getAttributes();
@@ -122,12 +156,8 @@ public class SshShellRunnable
                     }, Signal.WINCH);
                 }
 
-                if (properties.isDisplayBanner() && shellBanner != null) {
-                    shellBanner.printBanner(environment, this.getClass(), ps);
-                }
-
                 DefaultResultHandler resultHandler = new DefaultResultHandler(terminal);
-                resultHandler.handleResult(baos.toString(StandardCharsets.UTF_8));
+                resultHandler.handleResult(banner);
                 resultHandler.handleResult("Please type `help` to see available commands");
 
                 LineReader reader = LineReaderBuilder.builder()
@@ -138,15 +168,7 @@ public class SshShellRunnable
                         .parser(lineReader.getParser())
                         .build();
 
-                Object authenticationObject = session.getSession().getIoSession().getAttribute(
-                        SshShellSecurityAuthenticationProvider.AUTHENTICATION_ATTRIBUTE);
-                SshAuthentication authentication = null;
-                if (authenticationObject != null) {
-                    if (!(authenticationObject instanceof SshAuthentication)) {
-                        throw new IllegalStateException("Unknown authentication object class: " + authenticationObject.getClass().getName());
-                    }
-                    authentication = (SshAuthentication) authenticationObject;
-                }
+                SshAuthentication authentication = authentication();
 
                 File historyFile = properties.getHistoryFile();
                 if (!properties.isSharedHistory()) {
@@ -155,10 +177,12 @@ public class SshShellRunnable
                 }
                 reader.setVariable(LineReader.HISTORY_FILE, historyFile.toPath());
 
-                SSH_THREAD_CONTEXT.set(new SshContext(this, terminal, reader, authentication));
-                shellListenerService.onSessionStarted(session);
-                new InteractiveShellRunner(reader, promptProvider, shell, new DefaultShellContext()).run(null);
-                shellListenerService.onSessionStopped(session);
+                callWithin(new SshContext(this, terminal, reader, authentication), () -> {
+                    shellListenerService.onSessionStarted(session);
+                    new InteractiveShellRunner(reader, promptProvider, shell, new DefaultShellContext()).run(null);
+                    shellListenerService.onSessionStopped(session);
+                    return null;
+                });
                 LOGGER.debug("{}: closing", session);
                 quit(0);
             } catch (Throwable e) {
@@ -172,7 +196,271 @@ public class SshShellRunnable
         }
     }
 
+    /**
+     * Run with given session context bound, releasing its resources (like files kept open by save post processor)
+     * once done
+     */
+    private static <T> T callWithin(SshContext ctx, Callable<T> task) throws Exception {
+        try {
+            return SshContextHolder.call(ctx, task);
+        } finally {
+            ctx.close();
+        }
+    }
+
+    /**
+     * Exec request: no banner, history nor line editor, the result is written to a dumb terminal
+     */
+    private void runCommand() {
+        int exitCode;
+        try (Terminal terminal = nonInteractiveTerminal("ssh-exec", is, os)) {
+            try {
+                exitCode = callWithin(new SshContext(this, terminal, null, authentication()), () -> {
+                    shellListenerService.onSessionStarted(session);
+                    int code = exitCode(execute(terminal, command));
+                    shellListenerService.onSessionStopped(session);
+                    return code;
+                });
+            } catch (Throwable e) {
+                shellListenerService.onSessionError(session);
+                LOGGER.error("{}: unexpected exception while executing [{}]", session, command, e);
+                exitCode = 1;
+            } finally {
+                terminal.writer().flush();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to open terminal", e);
+            exitCode = 1;
+        }
+        LOGGER.debug("{}: command executed, exit code: {}", session, exitCode);
+        quit(exitCode);
+    }
+
+    /**
+     * Shell channel without pty (ssh -T, usually with piped input)
+     *
+     * @return true if commands should be run in batch mode
+     */
+    private boolean isBatch() {
+        return properties.getBatch().isEnable() && sshEnv.getPtyModes().isEmpty()
+                && !sshEnv.getEnv().containsKey(SSH_ENV_TERM);
+    }
+
+    /**
+     * Batch mode: commands are read from input as they arrive, each result is written without colors nor table
+     * borders, as text or as one json object per line. Output is flushed only when no more input is available.
+     */
+    private void runBatch() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int exitCode;
+        try (Terminal terminal = nonInteractiveTerminal("ssh-batch", InputStream.nullInputStream(), buffer)) {
+            try {
+                SshContext ctx = new SshContext(this, terminal, null, authentication());
+                ctx.setBatch(true);
+                exitCode = callWithin(ctx, () -> {
+                    shellListenerService.onSessionStarted(session);
+                    int code = runBatch(terminal, buffer);
+                    shellListenerService.onSessionStopped(session);
+                    return code;
+                });
+            } catch (Throwable e) {
+                shellListenerService.onSessionError(session);
+                LOGGER.error("{}: unexpected exception in batch mode", session, e);
+                exitCode = 1;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to open terminal", e);
+            exitCode = 1;
+        }
+        LOGGER.debug("{}: batch ended, exit code: {}", session, exitCode);
+        quit(exitCode);
+    }
+
+    private int runBatch(Terminal terminal, ByteArrayOutputStream buffer) throws IOException {
+        boolean ndjson = batchFormat() == SshShellProperties.BatchFormat.ndjson;
+        String delimiter = properties.getBatch().getDelimiter();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        int exitCode = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            Object result = execute(terminal, line);
+            terminal.writer().flush();
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            int status = exitCode(result);
+            String output = AttributedString.stripAnsi(buffer.toString(StandardCharsets.UTF_8));
+            buffer.reset();
+            if (ndjson) {
+                writeJsonResult(out, line, duration, status, output);
+            } else {
+                out.write(output);
+                if (!output.isEmpty() && !output.endsWith("\n")) {
+                    out.write('\n');
+                }
+                if (!delimiter.isEmpty()) {
+                    out.write(delimiter);
+                    out.write('\n');
+                }
+            }
+            if (result instanceof ExitRequest) {
+                exitCode = status;
+                break;
+            }
+            if (status != 0) {
+                exitCode = status;
+            }
+            if (!reader.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+        return exitCode;
+    }
+
+    private SshShellProperties.BatchFormat batchFormat() {
+        String format = sshEnv.getEnv().get(SSH_ENV_BATCH_FORMAT);
+        if (format != null) {
+            try {
+                return SshShellProperties.BatchFormat.valueOf(format.trim().toLowerCase());
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("{}: unknown batch format [{}], using default one", session, format);
+            }
+        }
+        return properties.getBatch().getFormat();
+    }
+
+    private static void writeJsonResult(Writer out, String command, long duration, int status, String output)
+            throws IOException {
+        String trimmed = output.endsWith("\n") ? output.substring(0, output.length() - 1) : output;
+        out.write("{\"command\":");
+        writeJsonString(out, command);
+        out.write(",\"duration\":" + duration + ",\"status\":" + status + ",\"output\":");
+        writeJsonString(out, trimmed);
+        out.write("}\n");
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    private Terminal nonInteractiveTerminal(String name, InputStream in, OutputStream out) throws IOException {
+        Terminal terminal = new DumbTerminal(name, Terminal.TYPE_DUMB, in, out, StandardCharsets.UTF_8);
+        int columns = NON_INTERACTIVE_COLUMNS;
+        if (sshEnv.getEnv().containsKey(SSH_ENV_COLUMNS)) {
+            try {
+                columns = Integer.parseInt(sshEnv.getEnv().get(SSH_ENV_COLUMNS));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Unable to get terminal columns : {}", e.getMessage());
+            }
+        }
+        terminal.setSize(new Size(columns, 0));
+        return terminal;
+    }
+
+    /**
+     * Parse and evaluate command line, including post processors
+     *
+     * @param terminal terminal
+     * @param line     command line
+     * @return evaluation result
+     */
+    private Object execute(Terminal terminal, String line) {
+        if (!(shell instanceof ExtendedShell extendedShell)) {
+            throw new IllegalStateException("Exec requests need shell to be an ExtendedShell");
+        }
+        List<String> words;
+        try {
+            words = lineReader.getParser().parse(line, line.length(), Parser.ParseContext.ACCEPT_LINE).words()
+                    .stream().filter(word -> !word.isEmpty()).toList();
+        } catch (SyntaxError e) {
+            terminal.writer().println("Unable to parse command: " + e.getMessage());
+            return e;
+        }
+        return extendedShell.execute(new Input() {
+            @Override
+            public String rawText() {
+                return line;
+            }
+
+            @Override
+            public List<String> words() {
+                return words;
+            }
+        });
+    }
+
+    private static int exitCode(Object result) {
+        if (result instanceof ExitRequest exitRequest) {
+            return exitRequest.status();
+        }
+        return result instanceof Throwable ? 1 : 0;
+    }
+
+    private SshAuthentication authentication() {
+        Object authenticationObject = session.getSession().getIoSession().getAttribute(
+                SshShellSecurityAuthenticationProvider.AUTHENTICATION_ATTRIBUTE);
+        if (authenticationObject == null) {
+            return null;
+        }
+        if (!(authenticationObject instanceof SshAuthentication)) {
+            throw new IllegalStateException("Unknown authentication object class: " + authenticationObject.getClass().getName());
+        }
+        return (SshAuthentication) authenticationObject;
+    }
+
+    /**
+     * @return ssh channel of this session
+     */
+    public ChannelSession getChannelSession() {
+        return session;
+    }
+
+    /**
+     * Send pending session output to ssh channel
+     */
+    public void flush() {
+        if (os != null) {
+            try {
+                os.forceFlush();
+            } catch (IOException e) {
+                LOGGER.debug("{}: unable to flush output: {}", session, e.getMessage());
+            }
+        }
+    }
+
     private void quit(int exitCode) {
+        flush();
+        if (os != null) {
+            try {
+                if (!os.awaitSent(properties.getSessions().getOutput().getBlockTimeout())) {
+                    LOGGER.warn("{}: exiting with {} output bytes not read by client", session, os.getOutstandingBytes());
+                }
+            } catch (IOException e) {
+                LOGGER.debug("{}: unable to send output: {}", session, e.getMessage());
+            }
+        }
         if (ec != null) {
             ec.onExit(exitCode);
         }
@@ -190,10 +478,4 @@ public class SshShellRunnable
     public org.apache.sshd.server.Environment getSshEnv() {
         return sshEnv;
     }
-
-    @Override
-    public Command create() {
-        return sshShellCommandFactory;
-    }
-
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Executor running ssh sessions</p>
+ * <p>Uses virtual threads when available (jdk 21+), or a bounded pool of platform threads otherwise</p>
+ */
+@Slf4j
+@Component
+public class SshShellSessionExecutor
+        implements DisposableBean {
+
+    public static final String THREAD_PREFIX = "ssh-session-";
+
+    private final ExecutorService executor;
+
+    private final boolean virtual;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor
+     *
+     * @param properties ssh shell properties
+     */
+    public SshShellSessionExecutor(SshShellProperties properties) {
+        SshShellProperties.Sessions sessions = properties.getSessions();
+        ExecutorService virtualExecutor = null;
+        if (useVirtualThreads(sessions.getExecutor(), Runtime.version().feature())) {
+            virtualExecutor = virtualThreadExecutor(THREAD_PREFIX);
+            if (virtualExecutor == null && sessions.getExecutor() == SshShellProperties.SessionExecutorType.virtual) {
+                LOGGER.warn("Virtual threads are not available on this jvm [{}], using platform threads instead",
+                        System.getProperty("java.version"));
+            }
+        }
+        this.virtual = virtualExecutor != null;
+        this.executor = virtualExecutor != null ? virtualExecutor : platformThreadExecutor(sessions.getMaxPlatformThreads());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            // shared by all sessions: must not inherit ssh context of session which started it
+            Thread thread = new Thread(null, r, "ssh-shell-scheduler", 0, false);
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.info("Ssh sessions will run on {} threads", virtual ? "virtual" :
+                "platform (max: " + sessions.getMaxPlatformThreads() + ")");
+    }
+
+    /**
+     * Submit session task
+     *
+     * @param task session task
+     * @return future of task
+     * @throws RejectedExecutionException if no more thread is available
+     */
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * @return scheduler for short delayed session tasks (like deferred output flushes)
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return true if sessions run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Sessions spend their life blocked in jline non blocking input streams, which wait inside synchronized blocks:
+     * before jdk 24 (JEP 491), it pins carrier threads, so 'auto' only picks virtual threads from jdk 24
+     *
+     * @param type        configured executor type
+     * @param javaVersion jvm feature version
+     * @return true if virtual threads should be tried
+     */
+    static boolean useVirtualThreads(SshShellProperties.SessionExecutorType type, int javaVersion) {
+        switch (type) {
+            case virtual:
+                return true;
+            case auto:
+                return javaVersion >= 24;
+            default:
+                return false;
+        }
+    }
+
+    private static ExecutorService platformThreadExecutor(int maxThreads) {
+        AtomicLong counter = new AtomicLong();
+        ThreadGroup group = new ThreadGroup("ssh-shell");
+        return new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(group, r, THREAD_PREFIX + counter.getAndIncrement(), 0, false);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Virtual threads are resolved by reflection as this library still targets jdk 17
+     *
+     * @param prefix thread name prefix
+     * @return virtual thread executor, or null if not available
+     */
+    static ExecutorService virtualThreadExecutor(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOGGER.debug("Virtual threads not available: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import com.github.fonimus.ssh.shell.manage.SshShellSession;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Executor for tasks started by commands, like parallel queries</p>
+ * <p>Tasks run with the ssh context of the session which submitted them (terminal, authentication, post
+ * processors), and are cancelled when this session is destroyed</p>
+ * <p>It is not an {@link Executor} itself, not to compete with application executors injected by type: use
+ * {@link #asExecutorService()} for apis expecting one</p>
+ */
+@Slf4j
+@Component
+public class SshShellTaskExecutor
+        implements DisposableBean {
+
+    public static final String THREAD_PREFIX = "ssh-task-";
+
+    private final ExecutorService executor;
+
+    private final SshShellSessionRegistry sessionRegistry;
+
+    private final ExecutorService view = new SessionExecutorService();
+
+    /**
+     * Constructor
+     *
+     * @param properties      ssh shell properties
+     * @param sessionRegistry session registry
+     */
+    public SshShellTaskExecutor(SshShellProperties properties, SshShellSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
+        SshShellProperties.Sessions sessions = properties.getSessions();
+        ExecutorService virtualExecutor = sessions.getExecutor() != SshShellProperties.SessionExecutorType.platform ?
+                SshShellSessionExecutor.virtualThreadExecutor(THREAD_PREFIX) : null;
+        this.executor = virtualExecutor != null ? virtualExecutor : platformThreadExecutor(sessions.getMaxTaskThreads());
+    }
+
+    /**
+     * Submit task, run with current session context
+     *
+     * @param task task
+     * @param <T>  result type
+     * @return future of task
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return view.submit(task);
+    }
+
+    /**
+     * Submit task, run with current session context
+     *
+     * @param task task
+     * @return future of task
+     */
+    public Future<?> submit(Runnable task) {
+        return view.submit(task);
+    }
+
+    /**
+     * Execute task with current session context
+     *
+     * @param task task
+     */
+    public void execute(Runnable task) {
+        view.execute(task);
+    }
+
+    /**
+     * @return executor service view of this executor (for {@link java.util.concurrent.CompletableFuture} for
+     * instance), shutting it down has no effect as it is shared by all sessions
+     */
+    public ExecutorService asExecutorService() {
+        return view;
+    }
+
+    private SshShellSession currentSession() {
+        SshContext ctx = SshContextHolder.get();
+        if (ctx == null || ctx.isLocalPrompt()) {
+            return null;
+        }
+        return sessionRegistry.get(ctx.getSshShellRunnable().getChannelSession());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService platformThreadExecutor(int maxThreads) {
+        AtomicLong counter = new AtomicLong();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(null, r, THREAD_PREFIX + counter.getAndIncrement(), 0, false);
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Executor service attaching tasks to the session which submitted them
+     */
+    private class SessionExecutorService
+            extends AbstractExecutorService {
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return newTaskFor(Executors.callable(runnable, value));
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new SessionTask<>(SshContextHolder.wrap(callable), currentSession());
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            SessionTask<?> task = command instanceof SessionTask ? (SessionTask<?>) command :
+                    (SessionTask<?>) newTaskFor(command, null);
+            if (task.session != null && !task.session.addChild(task)) {
+                // session already stopped, task has been cancelled
+                return;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.cancel(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            // shared by all sessions, only stopped with application context (try-with-resources calls it on jdk 19+)
+            LOGGER.debug("Ignoring shutdown of ssh shell task executor");
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            LOGGER.debug("Ignoring shutdown of ssh shell task executor");
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * Task attached to the session which submitted it
+     *
+     * @param <T> result type
+     */
+    private static class SessionTask<T>
+            extends FutureTask<T> {
+
+        private final SshShellSession session;
+
+        SessionTask(Callable<T> callable, SshShellSession session) {
+            super(callable);
+            this.session = session;
+        }
+
+        @Override
+        protected void done() {
+            if (session != null) {
+                session.removeChild(this);
+            }
+        }
+    }
+}
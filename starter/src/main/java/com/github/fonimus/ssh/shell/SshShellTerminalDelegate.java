@@ -31,8 +31,6 @@ import java.nio.charset.Charset;
 import java.util.function.IntConsumer;
 import java.util.function.IntSupplier;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
-
 /**
  * <p>Shell terminal delegate</p>
  * <p>Calls are bound to terminal stored in thread context</p>
@@ -53,7 +51,7 @@ public class SshShellTerminalDelegate implements Terminal {
     }
 
     private Terminal delegate() {
-        SshContext current = SSH_THREAD_CONTEXT.get();
+        SshContext current = SshContextHolder.get();
         if (current != null && current.getTerminal() != null) {
             return current.getTerminal();
         }
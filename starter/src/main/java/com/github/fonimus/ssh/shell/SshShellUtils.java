@@ -18,18 +18,87 @@ package com.github.fonimus.ssh.shell;
 
 import org.apache.sshd.common.channel.PtyMode;
 import org.jline.terminal.Attributes;
+import org.jline.utils.InfoCmp;
+import org.jline.utils.WCWidth;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility tools
  */
 public final class SshShellUtils {
 
+    private static final String FALLBACK_TERMINAL_TYPE = "ansi";
+
+    private static final char ESC = '\u001B';
+
+    private static final char BEL = '\u0007';
+
+    private static final char CSI = '\u009B';
+
+    private static final Map<String, String> TERMINAL_TYPES = new ConcurrentHashMap<>();
+
     private SshShellUtils() {
         // private constructor
     }
 
+    /**
+     * <p>Resolve terminal type only once per jvm</p>
+     * <p>Jline caches whatever infocmp prints (error message included), but not a failed process start: without
+     * infocmp command, each session of a type not bundled with jline would try to start it again. Types without
+     * parsable capabilities are resolved once to ansi type instead, which is bundled. Capabilities themselves are
+     * still loaded and parsed by jline for each terminal.</p>
+     *
+     * @param type terminal type, as sent by client
+     * @return terminal type to use
+     */
+    public static String terminalType(String type) {
+        if (type == null || type.isEmpty()) {
+            return type;
+        }
+        String resolved = TERMINAL_TYPES.computeIfAbsent(type, SshShellUtils::resolveTerminalType);
+        return resolved != null ? resolved : FALLBACK_TERMINAL_TYPE;
+    }
+
+    private static String resolveTerminalType(String type) {
+        try {
+            // types bundled with jline do not need infocmp
+            String capabilities = InfoCmp.getLoadedInfoCmp(type);
+            if (capabilities == null) {
+                capabilities = InfoCmp.getInfoCmp(type);
+            }
+            if (hasCapabilities(capabilities)) {
+                return type;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // not cached, will be resolved again by next session
+            return null;
+        } catch (Exception e) {
+            // no capabilities for this type
+        }
+        return FALLBACK_TERMINAL_TYPE;
+    }
+
+    /**
+     * Infocmp prints its error message (like unknown terminal type) instead of capabilities, check that real
+     * capabilities can be parsed
+     */
+    private static boolean hasCapabilities(String capabilities) {
+        if (capabilities == null || capabilities.isBlank()) {
+            return false;
+        }
+        Set<InfoCmp.Capability> bools = new HashSet<>();
+        Map<InfoCmp.Capability, Integer> ints = new HashMap<>();
+        Map<InfoCmp.Capability, String> strings = new HashMap<>();
+        InfoCmp.parseInfoCmp(capabilities, bools, ints, strings);
+        return !strings.isEmpty();
+    }
+
     /**
      * Fill attributes with given modes
      *
@@ -98,4 +167,162 @@ public final class SshShellUtils {
         }
     }
 
+    /**
+     * <p>Length of ansi escape sequence starting at given index</p>
+     * <p>Handles CSI sequences (ESC [ or 0x9b, parameters, intermediates and final byte), string sequences like
+     * OSC (ESC ], terminated by BEL or ESC \) and two characters escapes. Unterminated sequences end with the
+     * text.</p>
+     *
+     * @param s     text
+     * @param index start index
+     * @return sequence length, or 0 if no sequence starts at this index
+     */
+    public static int ansiSequenceLength(CharSequence s, int index) {
+        int length = s.length();
+        char c = s.charAt(index);
+        int i;
+        if (c == CSI) {
+            i = index + 1;
+        } else if (c != ESC) {
+            return 0;
+        } else if (index + 1 >= length) {
+            return 1;
+        } else {
+            char next = s.charAt(index + 1);
+            if (next == '[') {
+                i = index + 2;
+            } else if (next == ']' || next == 'P' || next == 'X' || next == '^' || next == '_') {
+                return stringSequenceEnd(s, index + 2) - index;
+            } else {
+                // ESC, intermediates, final byte
+                i = index + 1;
+                while (i < length && s.charAt(i) >= 0x20 && s.charAt(i) <= 0x2f) {
+                    i++;
+                }
+                return (i < length && s.charAt(i) >= 0x30 && s.charAt(i) <= 0x7e ? i + 1 : i) - index;
+            }
+        }
+        // CSI: parameters, intermediates, final byte
+        while (i < length && s.charAt(i) >= 0x30 && s.charAt(i) <= 0x3f) {
+            i++;
+        }
+        while (i < length && s.charAt(i) >= 0x20 && s.charAt(i) <= 0x2f) {
+            i++;
+        }
+        return (i < length && s.charAt(i) >= 0x40 && s.charAt(i) <= 0x7e ? i + 1 : i) - index;
+    }
+
+    private static int stringSequenceEnd(CharSequence s, int i) {
+        int length = s.length();
+        while (i < length) {
+            char c = s.charAt(i++);
+            if (c == BEL) {
+                return i;
+            }
+            if (c == ESC && i < length && s.charAt(i) == '\\') {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    private static int nextSequence(CharSequence s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ESC || c == CSI) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove ansi escape sequences
+     *
+     * @param s text
+     * @return text without escape sequences, same instance if it does not contain any
+     */
+    public static String stripAnsi(String s) {
+        int start = s == null ? -1 : nextSequence(s, 0);
+        if (start < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        int last = 0;
+        while (start >= 0) {
+            sb.append(s, last, start);
+            last = start + Math.max(1, ansiSequenceLength(s, start));
+            start = nextSequence(s, last);
+        }
+        return sb.append(s, last, s.length()).toString();
+    }
+
+    /**
+     * Number of terminal columns needed to display text: escape sequences and control characters are ignored,
+     * combining characters take no column and wide characters (east asian, emoji) take two
+     *
+     * @param s text
+     * @return visible width
+     */
+    public static int visibleWidth(CharSequence s) {
+        if (s == null) {
+            return 0;
+        }
+        int width = 0;
+        int i = 0;
+        while (i < s.length()) {
+            int sequence = ansiSequenceLength(s, i);
+            if (sequence > 0) {
+                i += sequence;
+                continue;
+            }
+            int cp = Character.codePointAt(s, i);
+            width += Math.max(0, WCWidth.wcwidth(cp));
+            i += Character.charCount(cp);
+        }
+        return width;
+    }
+
+    /**
+     * <p>Truncate text to given number of columns</p>
+     * <p>Escape sequences are kept, including the ones after the cut, so that styles are still reset</p>
+     *
+     * @param s       text
+     * @param columns maximum visible width
+     * @return truncated text, same instance if it already fits
+     */
+    public static String truncateAnsi(String s, int columns) {
+        if (s == null) {
+            return null;
+        }
+        int width = 0;
+        int i = 0;
+        int cut = -1;
+        while (i < s.length()) {
+            int sequence = ansiSequenceLength(s, i);
+            if (sequence > 0) {
+                i += sequence;
+                continue;
+            }
+            int cp = s.codePointAt(i);
+            width += Math.max(0, WCWidth.wcwidth(cp));
+            if (width > columns) {
+                cut = i;
+                break;
+            }
+            i += Character.charCount(cp);
+        }
+        if (cut < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(cut + 16).append(s, 0, cut);
+        int start = nextSequence(s, cut);
+        while (start >= 0) {
+            int sequence = Math.max(1, ansiSequenceLength(s, start));
+            sb.append(s, start, start + sequence);
+            start = nextSequence(s, start + sequence);
+        }
+        return sb.toString();
+    }
+
 }
@@ -16,7 +16,7 @@
 
 package com.github.fonimus.ssh.shell.commands;
 
-import com.github.fonimus.ssh.shell.SshShellCommandFactory;
+import com.github.fonimus.ssh.shell.SshContextHolder;
 import com.github.fonimus.ssh.shell.SshShellHelper;
 import com.github.fonimus.ssh.shell.SshShellProperties;
 import com.github.fonimus.ssh.shell.auth.SshAuthentication;
@@ -70,7 +70,7 @@ public class AbstractCommand extends AbstractShellComponent {
                 LOGGER.debug("Not an ssh session -> local prompt -> giving all rights");
                 return Availability.available();
             }
-            SshAuthentication auth = SshShellCommandFactory.SSH_THREAD_CONTEXT.get().getAuthentication();
+            SshAuthentication auth = SshContextHolder.get().getAuthentication();
             List<String> authorities = auth != null ? auth.getAuthorities() : null;
             if (commandProperties.isRestricted() && !helper.checkAuthorities(commandProperties.getAuthorizedRoles(),
                     authorities, properties.getAuthentication() == SshShellProperties.AuthenticationType.simple)) {
@@ -20,6 +20,7 @@ import com.github.fonimus.ssh.shell.SimpleTable;
 import com.github.fonimus.ssh.shell.SshShellHelper;
 import com.github.fonimus.ssh.shell.SshShellProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.shell.Availability;
 import org.springframework.shell.CompletionContext;
@@ -229,18 +230,39 @@ public class JmxCommand extends AbstractCommand {
     }
 }
 
+/**
+ * Object names completion, from an index kept up to date with mbean registrations
+ */
 @Slf4j
 @Component
-class ObjectNameValuesProvider implements ValueProvider {
+class ObjectNameValuesProvider implements ValueProvider, DisposableBean {
+
+    static final int MAX_PROPOSALS = 100;
+
+    private final ObjectNameIndex index;
+
+    ObjectNameValuesProvider() {
+        this(new ObjectNameIndex(ManagementFactory.getPlatformMBeanServer()));
+    }
+
+    ObjectNameValuesProvider(ObjectNameIndex index) {
+        this.index = index;
+    }
 
     @Override
     public List<CompletionProposal> complete(CompletionContext completionContext) {
+        String prefix = completionContext.currentWordUpToCursor();
         try {
-            return ManagementFactory.getPlatformMBeanServer().queryMBeans(null, null).stream()
-                    .map(o -> new CompletionProposal(o.getObjectName().toString())).collect(Collectors.toList());
+            return index.find(prefix != null ? prefix : "", MAX_PROPOSALS).stream()
+                    .map(CompletionProposal::new).collect(Collectors.toList());
         } catch (Exception e) {
             LOGGER.debug("Unable to provide completion for jmx object names", e);
             return Collections.emptyList();
         }
     }
+
+    @Override
+    public void destroy() {
+        index.stop();
+    }
 }
@@ -18,11 +18,12 @@ package com.github.fonimus.ssh.shell.commands;
 
 import com.github.fonimus.ssh.shell.SimpleTable;
 import com.github.fonimus.ssh.shell.SshShellHelper;
+import com.github.fonimus.ssh.shell.SshShellOutputStream;
 import com.github.fonimus.ssh.shell.SshShellProperties;
+import com.github.fonimus.ssh.shell.manage.SshShellSession;
 import com.github.fonimus.ssh.shell.manage.SshShellSessionManager;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.sshd.server.channel.ChannelSession;
 import org.apache.sshd.server.session.ServerSession;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Lazy;
@@ -32,13 +33,12 @@ import org.springframework.shell.CompletionProposal;
 import org.springframework.shell.standard.*;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
-import static com.github.fonimus.ssh.shell.manage.SshShellSessionManager.sessionUserName;
-
 /**
  * Command to manage ssh sessions, not available by default
  */
@@ -54,6 +54,7 @@ public class ManageSessionsCommand extends AbstractCommand {
     private static final String COMMAND_MANAGE_SESSIONS_LIST = GROUP + "-list";
     private static final String COMMAND_MANAGE_SESSIONS_INFO = GROUP + "-info";
     private static final String COMMAND_MANAGE_SESSIONS_STOP = GROUP + "-stop";
+    private static final String COMMAND_MANAGE_SESSIONS_SPILL = GROUP + "-spill";
 
     private final SshShellSessionManager sessionManager;
 
@@ -66,17 +67,19 @@ public class ManageSessionsCommand extends AbstractCommand {
     @ShellMethod(key = COMMAND_MANAGE_SESSIONS_LIST, value = "Displays active sessions")
     @ShellMethodAvailability("manageSessionsListAvailability")
     public String manageSessionsList() {
-        Map<Long, ChannelSession> sessions = sessionManager.listSessions();
-
         SimpleTable.SimpleTableBuilder builder = SimpleTable.builder()
-                .column("Session Id").column("Local address").column("Remote address").column("Authenticated User");
+                .column("Session Id").column("Local address").column("Remote address").column("Authenticated User")
+                .column("Start time").column("State");
 
-        for (ChannelSession value : sessions.values()) {
+        for (SshShellSession session : sessionManager.sessions()) {
+            ServerSession serverSession = session.getChannel().getServerSession();
             builder.line(Arrays.asList(
-                    value.getServerSession().getIoSession().getId(),
-                    value.getServerSession().getIoSession().getLocalAddress(),
-                    value.getServerSession().getIoSession().getRemoteAddress(),
-                    sessionUserName(value)
+                    session.getId(),
+                    serverSession.getIoSession().getLocalAddress(),
+                    serverSession.getIoSession().getRemoteAddress(),
+                    session.getUser(),
+                    session.getStartTime(),
+                    session.getState()
             ));
         }
         return helper.renderTable(builder.build());
@@ -85,11 +88,11 @@ public class ManageSessionsCommand extends AbstractCommand {
     @ShellMethod(key = COMMAND_MANAGE_SESSIONS_INFO, value = "Displays session")
     @ShellMethodAvailability("manageSessionsInfoAvailability")
     public String manageSessionsInfo(@ShellOption(help = "Session identifier", valueProvider = SessionsValuesProvider.class) long sessionId) {
-        ChannelSession session = sessionManager.getSession(sessionId);
+        SshShellSession session = sessionManager.getShellSession(sessionId);
         if (session == null) {
             return helper.getError("Session [" + sessionId + "] not found");
         }
-        return helper.getSuccess(sessionTable(session.getServerSession()));
+        return helper.getSuccess(sessionTable(session));
     }
 
     @ShellMethod(key = COMMAND_MANAGE_SESSIONS_STOP, value = "Stop session")
@@ -100,15 +103,55 @@ public class ManageSessionsCommand extends AbstractCommand {
                 helper.getWarning("Unable to stop session [" + sessionId + "], maybe it does not exist");
     }
 
-    private String sessionTable(ServerSession session) {
-        return helper.renderTable(SimpleTable.builder()
+    @ShellMethod(key = COMMAND_MANAGE_SESSIONS_SPILL, value = "Displays output spilled to file for a slow client")
+    @ShellMethodAvailability("manageSessionsSpillAvailability")
+    public String manageSessionsSpill(
+            @ShellOption(help = "Session identifier", valueProvider = SessionsValuesProvider.class) long sessionId,
+            @ShellOption(help = "Offset in spilled output", defaultValue = "0") long offset,
+            @ShellOption(help = "Maximum number of bytes to display", defaultValue = "65536") int size) {
+        SshShellSession session = sessionManager.getShellSession(sessionId);
+        if (session == null) {
+            return helper.getError("Session [" + sessionId + "] not found");
+        }
+        SshShellOutputStream output = session.getOutput();
+        if (output == null || output.getSpillFile() == null) {
+            return helper.getWarning("No output spilled for session [" + sessionId + "]");
+        }
+        try {
+            byte[] bytes = output.readSpilled(offset, size);
+            long end = offset + bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8) + System.lineSeparator() +
+                    helper.getInfo("[bytes " + offset + "-" + end + " of " + output.getSpilledBytes() + "]");
+        } catch (IOException e) {
+            return helper.getError("Unable to read spilled output: " + e.getMessage());
+        }
+    }
+
+    private String sessionTable(SshShellSession shellSession) {
+        ServerSession session = shellSession.getChannel().getServerSession();
+        SimpleTable.SimpleTableBuilder builder = SimpleTable.builder()
                 .column("Property").column("Value")
-                .line(Arrays.asList("Session id", session.getIoSession().getId()))
+                .line(Arrays.asList("Session id", shellSession.getId()))
+                .line(Arrays.asList("Ssh session id", session.getIoSession().getId()))
+                .line(Arrays.asList("Authenticated user", shellSession.getUser()))
+                .line(Arrays.asList("Start time", shellSession.getStartTime()))
+                .line(Arrays.asList("State", shellSession.getState()))
+                .line(Arrays.asList("Child tasks", shellSession.getChildCount()))
                 .line(Arrays.asList("Local address", session.getIoSession().getLocalAddress()))
                 .line(Arrays.asList("Remote address", session.getIoSession().getRemoteAddress()))
                 .line(Arrays.asList("Server version", session.getServerVersion()))
-                .line(Arrays.asList("Client version", session.getClientVersion()))
-                .build());
+                .line(Arrays.asList("Client version", session.getClientVersion()));
+        SshShellOutputStream output = shellSession.getOutput();
+        if (output != null) {
+            builder.line(Arrays.asList("Outstanding output bytes", output.getOutstandingBytes()))
+                    .line(Arrays.asList("Written output bytes", output.getWrittenBytes()))
+                    .line(Arrays.asList("Dropped output bytes", output.getDroppedBytes()));
+            if (output.getSpillFile() != null) {
+                builder.line(Arrays.asList("Output spill file", output.getSpillFile()))
+                        .line(Arrays.asList("Spilled output bytes", output.getSpilledBytes()));
+            }
+        }
+        return helper.renderTable(builder.build());
     }
 
     private Availability manageSessionsListAvailability() {
@@ -122,6 +165,10 @@ public class ManageSessionsCommand extends AbstractCommand {
     private Availability manageSessionsStopAvailability() {
         return availability(GROUP, COMMAND_MANAGE_SESSIONS_STOP);
     }
+
+    private Availability manageSessionsSpillAvailability() {
+        return availability(GROUP, COMMAND_MANAGE_SESSIONS_SPILL);
+    }
 }
 
 @Slf4j
@@ -135,6 +182,7 @@ class SessionsValuesProvider
 
     @Override
     public List<CompletionProposal> complete(CompletionContext completionContext) {
-        return sessionManager.listSessions().keySet().stream().map(id -> new CompletionProposal(id.toString())).collect(Collectors.toList());
+        return sessionManager.sessions().stream()
+                .map(session -> new CompletionProposal(String.valueOf(session.getId()))).collect(Collectors.toList());
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.commands;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.*;
+import javax.management.relation.MBeanServerNotificationFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Sorted index of mbean object names, for prefix lookups</p>
+ * <p>Filled on first use, then kept up to date with mbean server registration and unregistration notifications</p>
+ */
+@Slf4j
+class ObjectNameIndex
+        implements NotificationListener {
+
+    private final MBeanServer server;
+
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean started;
+
+    ObjectNameIndex(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Find object names starting with given prefix, in natural order
+     *
+     * @param prefix prefix
+     * @param max    maximum number of names to return
+     * @return object names
+     * @throws JMException if mbean server cannot be listened
+     */
+    List<String> find(String prefix, int max) throws JMException {
+        start();
+        List<String> found = new ArrayList<>();
+        for (String name : names.tailSet(prefix, true)) {
+            if (found.size() >= max || !name.startsWith(prefix)) {
+                break;
+            }
+            found.add(name);
+        }
+        return found;
+    }
+
+    /**
+     * @return number of indexed object names
+     */
+    int size() {
+        return names.size();
+    }
+
+    private void start() throws JMException {
+        if (started) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!started) {
+                // filter selects no object name by default
+                MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+                filter.enableAllObjectNames();
+                // listen first, so that no registration is missed while querying
+                server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+                for (ObjectName name : server.queryNames(null, null)) {
+                    names.add(name.toString());
+                }
+                started = true;
+                LOGGER.debug("{} object names indexed", names.size());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop listening to mbean server
+     */
+    void stop() {
+        lock.lock();
+        try {
+            if (started) {
+                server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+                started = false;
+                names.clear();
+            }
+        } catch (InstanceNotFoundException | ListenerNotFoundException e) {
+            LOGGER.debug("Unable to remove mbean server listener: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (notification instanceof MBeanServerNotification) {
+            String name = ((MBeanServerNotification) notification).getMBeanName().toString();
+            if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                names.add(name);
+            } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                names.remove(name);
+            }
+        }
+    }
+}
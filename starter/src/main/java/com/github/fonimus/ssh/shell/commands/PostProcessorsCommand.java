@@ -22,12 +22,13 @@ import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ResolvableType;
 import org.springframework.shell.Availability;
 import org.springframework.shell.standard.ShellCommandGroup;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellMethodAvailability;
+import org.springframework.util.ClassUtils;
 
-import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -62,10 +63,11 @@ public class PostProcessorsCommand extends AbstractCommand {
         result.append("Available Post-Processors\n\n", AttributedStyle.BOLD);
         for (PostProcessor<?, ?> postProcessor : postProcessors) {
             result.append("\t" + postProcessor.getName() + ":\n", AttributedStyle.BOLD);
-            Class<?> input =
-                    ((Class<?>) ((ParameterizedType) (postProcessor.getClass().getGenericInterfaces())[0]).getActualTypeArguments()[0]);
-            Class<?> output =
-                    ((Class<?>) ((ParameterizedType) (postProcessor.getClass().getGenericInterfaces())[0]).getActualTypeArguments()[1]);
+            // user class to see through cglib proxies
+            ResolvableType type = ResolvableType.forClass(ClassUtils.getUserClass(postProcessor))
+                    .as(PostProcessor.class);
+            Class<?> input = type.getGeneric(0).resolve(Object.class);
+            Class<?> output = type.getGeneric(1).resolve(Object.class);
             result.append("\t\thelp   : " + postProcessor.getDescription() + "\n", AttributedStyle.DEFAULT);
             result.append("\t\tinput  : " + input.getName() + "\n", AttributedStyle.DEFAULT);
             result.append("\t\toutput : " + output.getName() + "\n", AttributedStyle.DEFAULT);
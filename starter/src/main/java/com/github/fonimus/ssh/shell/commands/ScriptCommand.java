@@ -18,6 +18,7 @@ package com.github.fonimus.ssh.shell.commands;
 
 import com.github.fonimus.ssh.shell.ExtendedShell;
 import com.github.fonimus.ssh.shell.SshContext;
+import com.github.fonimus.ssh.shell.SshContextHolder;
 import com.github.fonimus.ssh.shell.SshShellHelper;
 import com.github.fonimus.ssh.shell.SshShellProperties;
 import com.github.fonimus.ssh.shell.interactive.Interactive;
@@ -53,8 +54,6 @@ import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
-
 /**
  * Override history command to get history per user if not shared
  */
@@ -125,11 +124,16 @@ public class ScriptCommand extends AbstractCommand
                     ctx.getPostProcessorsList().add(new PostProcessorObject(SavePostProcessor.SAVE,
                             Collections.singletonList(output.getAbsolutePath())));
                     status = new ScriptStatus(executor().submit(() -> {
-                        SSH_THREAD_CONTEXT.set(ctx);
                         try {
-                            run(file);
-                        } catch (IOException e) {
+                            SshContextHolder.call(ctx, () -> {
+                                run(file);
+                                return null;
+                            });
+                        } catch (Exception e) {
                             LOGGER.warn("Unable to run script command : {}", e.getMessage(), e);
+                        } finally {
+                            // flush and close files written by script
+                            ctx.close();
                         }
                     }), output, count, ctx);
                     helper.print("Script from file starting un background. Please check results at " + output.getAbsolutePath() + ".");
@@ -19,6 +19,7 @@ package com.github.fonimus.ssh.shell.commands.system;
 import com.github.fonimus.ssh.shell.PromptColor;
 import com.github.fonimus.ssh.shell.SshShellHelper;
 import com.github.fonimus.ssh.shell.SshShellProperties;
+import com.github.fonimus.ssh.shell.SshShellUtils;
 import com.github.fonimus.ssh.shell.commands.AbstractCommand;
 import com.github.fonimus.ssh.shell.commands.ColorAligner;
 import com.github.fonimus.ssh.shell.commands.SshShellComponent;
@@ -92,13 +93,18 @@ public class SystemCommand extends AbstractCommand {
         StringBuilder sb = new StringBuilder();
         int max = -1;
         for (String s : map.keySet()) {
-            if (s.length() > max && s.length() < maxColumn) {
-                max = s.length();
+            int width = SshShellUtils.visibleWidth(s);
+            if (width > max && width < maxColumn) {
+                max = width;
             }
         }
 
         for (Map.Entry<String, String> e : map.entrySet()) {
-            sb.append(String.format("%-" + max + "s", e.getKey())).append(" | ").append(e.getValue()).append("\n");
+            sb.append(e.getKey());
+            for (int i = SshShellUtils.visibleWidth(e.getKey()); i < max; i++) {
+                sb.append(' ');
+            }
+            sb.append(" | ").append(e.getValue()).append("\n");
         }
         return sb.toString();
     }
@@ -136,9 +142,9 @@ public class SystemCommand extends AbstractCommand {
         for (String line : raw) {
             String[] words = line.split(SPLIT_REGEX);
             for (String word : words) {
-                min = Math.max(min, word.length());
+                min = Math.max(min, SshShellUtils.visibleWidth(word));
             }
-            max = Math.max(max, line.length());
+            max = Math.max(max, SshShellUtils.visibleWidth(line));
         }
         return new SizeConstraints.Extent(min, max);
     }
@@ -194,14 +200,16 @@ public class SystemCommand extends AbstractCommand {
                     .append(" ms\n")
                     .toAttributedString());
 
+            // lines are cut to terminal width before being parsed, display would drop the rest anyway
+            int columns = size.getColumns();
             for (String s : table(finalOrderBy[0], finalReverseOrder[0], true).split("\n")) {
-                lines.add(AttributedString.fromAnsi(s));
+                lines.add(AttributedString.fromAnsi(SshShellUtils.truncateAnsi(s, columns)));
             }
 
-            lines.add(AttributedString.fromAnsi("Press 'r' to reverse order, first column letter to change order by"));
-            String msg = INTERACTIVE_LONG_MESSAGE.length() <= helper.terminalSize().getColumns() ?
+            lines.add(new AttributedString("Press 'r' to reverse order, first column letter to change order by"));
+            String msg = SshShellUtils.visibleWidth(INTERACTIVE_LONG_MESSAGE) <= columns ?
                     INTERACTIVE_LONG_MESSAGE : INTERACTIVE_SHORT_MESSAGE;
-            lines.add(AttributedString.fromAnsi(msg));
+            lines.add(new AttributedString(msg));
 
             return lines;
         }).build());
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import com.github.fonimus.ssh.shell.SshShellOutputStream;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.sshd.server.channel.ChannelSession;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ssh shell session, one per ssh channel
+ */
+@Getter
+public class SshShellSession {
+
+    private final long id;
+
+    private final String user;
+
+    private final Instant startTime;
+
+    private final ChannelSession channel;
+
+    private final long startNanos = System.nanoTime();
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean prompted = new AtomicBoolean();
+
+    private volatile State state = State.waiting;
+
+    private volatile Future<?> task;
+
+    @Getter(AccessLevel.NONE)
+    private final Set<Future<?>> children = ConcurrentHashMap.newKeySet();
+
+    @Setter
+    private volatile SshShellOutputStream output;
+
+    /**
+     * Constructor
+     *
+     * @param id      session identifier
+     * @param user    authenticated user
+     * @param channel ssh channel
+     */
+    public SshShellSession(long id, String user, ChannelSession channel) {
+        this.id = id;
+        this.user = user;
+        this.channel = channel;
+        this.startTime = Instant.now();
+    }
+
+    /**
+     * Set session task, cancelling it directly if session has been stopped meanwhile
+     *
+     * @param task task running the session
+     */
+    public void setTask(Future<?> task) {
+        this.task = task;
+        if (state == State.stopping) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Attach a task started by a command of this session, to cancel it when session stops
+     *
+     * @param child child task
+     * @return true if attached, false if session is stopping (task is then cancelled)
+     */
+    public boolean addChild(Future<?> child) {
+        children.add(child);
+        if (state == State.stopping) {
+            children.remove(child);
+            child.cancel(true);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Detach a finished child task
+     *
+     * @param child child task
+     */
+    public void removeChild(Future<?> child) {
+        children.remove(child);
+    }
+
+    /**
+     * @return number of running child tasks
+     */
+    public int getChildCount() {
+        return children.size();
+    }
+
+    /**
+     * Mark session as running
+     */
+    public void running() {
+        if (state == State.waiting) {
+            state = State.running;
+        }
+    }
+
+    /**
+     * Mark first prompt as displayed
+     *
+     * @return time since session start in nanoseconds if it is the first prompt, -1 otherwise
+     */
+    public long firstPrompt() {
+        return prompted.compareAndSet(false, true) ? System.nanoTime() - startNanos : -1;
+    }
+
+    /**
+     * Stop session by interrupting its task
+     */
+    public void stop() {
+        state = State.stopping;
+        Future<?> current = task;
+        if (current != null) {
+            current.cancel(true);
+        }
+        for (Future<?> child : children) {
+            child.cancel(true);
+        }
+    }
+
+    /**
+     * Session state
+     */
+    public enum State {
+        waiting, running, stopping
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import java.io.Serial;
+
+/**
+ * Ssh session refused because of session limits
+ */
+public class SshShellSessionLimitException
+        extends Exception {
+
+    @Serial
+    private static final long serialVersionUID = 4520932387136043957L;
+
+    public SshShellSessionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import com.github.fonimus.ssh.shell.SshShellProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Session admission control</p>
+ * <p>Checks global and per user concurrent session limits, with optional bounded queue</p>
+ */
+@Slf4j
+@Component
+public class SshShellSessionLimiter {
+
+    private final int maxTotal;
+
+    private final int maxPerUser;
+
+    private final int queueSize;
+
+    private final Duration queueTimeout;
+
+    // lock instead of monitor so that waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    private final Map<String, Integer> perUser = new HashMap<>();
+
+    private int total;
+
+    private int waiting;
+
+    private final Map<RejectionReason, LongAdder> rejected = new EnumMap<>(RejectionReason.class);
+
+    private final LongAdder waitCount = new LongAdder();
+
+    private final LongAdder waitTotalNanos = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param properties ssh shell properties
+     */
+    public SshShellSessionLimiter(SshShellProperties properties) {
+        SshShellProperties.Sessions sessions = properties.getSessions();
+        this.maxTotal = sessions.getMaxTotal();
+        this.maxPerUser = sessions.getMaxPerUser();
+        this.queueSize = Math.max(0, sessions.getQueueSize());
+        this.queueTimeout = sessions.getQueueTimeout() != null ? sessions.getQueueTimeout() : Duration.ZERO;
+        for (RejectionReason reason : RejectionReason.values()) {
+            rejected.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * Acquire a session slot for given user, waiting in queue if configured
+     *
+     * @param user authenticated user
+     * @throws SshShellSessionLimitException if session is refused
+     * @throws InterruptedException          if interrupted while waiting in queue
+     */
+    public void acquire(String user) throws SshShellSessionLimitException, InterruptedException {
+        lock.lock();
+        try {
+            if (canStart(user)) {
+                register(user);
+                return;
+            }
+            if (waiting >= queueSize) {
+                throw reject(queueSize == 0 ? RejectionReason.limit : RejectionReason.queue_full, user);
+            }
+            waiting++;
+            long start = System.nanoTime();
+            long remaining = queueTimeout.toNanos();
+            try {
+                while (!canStart(user)) {
+                    if (remaining <= 0) {
+                        throw reject(RejectionReason.timeout, user);
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } finally {
+                waiting--;
+                waitCount.increment();
+                waitTotalNanos.add(System.nanoTime() - start);
+            }
+            register(user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release session slot of given user
+     *
+     * @param user authenticated user
+     */
+    public void release(String user) {
+        lock.lock();
+        try {
+            total--;
+            perUser.computeIfPresent(user, (u, count) -> count > 1 ? count - 1 : null);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canStart(String user) {
+        return (maxTotal < 0 || total < maxTotal) && (maxPerUser < 0 || perUser.getOrDefault(user, 0) < maxPerUser);
+    }
+
+    private void register(String user) {
+        total++;
+        perUser.merge(user, 1, Integer::sum);
+    }
+
+    private SshShellSessionLimitException reject(RejectionReason reason, String user) {
+        rejected.get(reason).increment();
+        String message;
+        if (maxTotal >= 0 && total >= maxTotal) {
+            message = "Maximum number of ssh sessions reached (" + maxTotal + ")";
+        } else {
+            message = "Maximum number of ssh sessions reached for user [" + user + "] (" + maxPerUser + ")";
+        }
+        if (reason == RejectionReason.timeout) {
+            message += ", no session slot freed after " + queueTimeout.toMillis() + " ms";
+        } else if (reason == RejectionReason.queue_full) {
+            message += ", waiting queue is full";
+        }
+        LOGGER.warn("Session refused for user [{}]: {}", user, message);
+        return new SshShellSessionLimitException(message + ". Please retry later.");
+    }
+
+    /**
+     * @return number of active sessions
+     */
+    public int getActiveSessions() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of sessions waiting for a slot
+     */
+    public int getWaitingSessions() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param reason rejection reason
+     * @return number of sessions rejected for given reason
+     */
+    public long getRejectedCount(RejectionReason reason) {
+        return rejected.get(reason).sum();
+    }
+
+    /**
+     * @return number of sessions which had to wait in queue
+     */
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * @param unit time unit
+     * @return total time spent waiting in queue
+     */
+    public double getWaitTotalTime(TimeUnit unit) {
+        return (double) waitTotalNanos.sum() / unit.toNanos(1);
+    }
+
+    /**
+     * Session rejection reason
+     */
+    public enum RejectionReason {
+        limit, queue_full, timeout
+    }
+}
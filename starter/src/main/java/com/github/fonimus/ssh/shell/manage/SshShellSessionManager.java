@@ -16,12 +16,13 @@
 
 package com.github.fonimus.ssh.shell.manage;
 
-import com.github.fonimus.ssh.shell.SshShellCommandFactory;
 import com.github.fonimus.ssh.shell.auth.SshAuthentication;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Session manager
@@ -29,32 +30,51 @@ import java.util.Map;
 @Component
 public class SshShellSessionManager {
 
-    private final SshShellCommandFactory commandFactory;
+    private final SshShellSessionRegistry sessionRegistry;
 
     /**
      * Ssh shell session manager
      *
-     * @param commandFactory ssh shell command factory
+     * @param sessionRegistry ssh shell session registry
      */
-    public SshShellSessionManager(SshShellCommandFactory commandFactory) {
-        this.commandFactory = commandFactory;
+    public SshShellSessionManager(SshShellSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
     }
 
     /**
      * List active sessions
      *
-     * @return active sessions
+     * @return active sessions, read directly from registry
+     */
+    public Collection<SshShellSession> sessions() {
+        return this.sessionRegistry.sessions();
+    }
+
+    /**
+     * List active sessions
+     *
+     * @return copy of active sessions, by identifier
      */
     public Map<Long, ChannelSession> listSessions() {
-        return this.commandFactory.listSessions();
+        return this.sessionRegistry.sessions().stream()
+                .collect(Collectors.toMap(SshShellSession::getId, SshShellSession::getChannel));
     }
 
     /**
      * @param id session id
      * @return found session, or null if not existing
      */
+    public SshShellSession getShellSession(long id) {
+        return this.sessionRegistry.get(id);
+    }
+
+    /**
+     * @param id session id
+     * @return found session channel, or null if not existing
+     */
     public ChannelSession getSession(long id) {
-        return listSessions().get(id);
+        SshShellSession session = getShellSession(id);
+        return session != null ? session.getChannel() : null;
     }
 
     /**
@@ -64,9 +84,10 @@ public class SshShellSessionManager {
      * @return true if session found and stopped, false otherwise
      */
     public boolean stopSession(long id) {
-        ChannelSession session = getSession(id);
+        SshShellSession session = getShellSession(id);
         if (session != null) {
-            this.commandFactory.destroy(session);
+            this.sessionRegistry.unregister(session.getChannel());
+            session.stop();
             return true;
         }
         return false;
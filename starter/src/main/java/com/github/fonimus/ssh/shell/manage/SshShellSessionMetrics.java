@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ssh sessions metrics, registered only if micrometer is in classpath
+ */
+@AllArgsConstructor
+public class SshShellSessionMetrics
+        implements MeterBinder {
+
+    public static final String PREFIX = "ssh.shell.sessions";
+
+    private final SshShellSessionLimiter limiter;
+
+    private final SshShellSessionRegistry sessionRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(PREFIX + ".active", limiter, SshShellSessionLimiter::getActiveSessions)
+                .description("Active ssh sessions")
+                .register(registry);
+        Gauge.builder(PREFIX + ".waiting", limiter, SshShellSessionLimiter::getWaitingSessions)
+                .description("Ssh sessions waiting for a free slot")
+                .register(registry);
+        for (SshShellSessionLimiter.RejectionReason reason : SshShellSessionLimiter.RejectionReason.values()) {
+            FunctionCounter.builder(PREFIX + ".rejected", limiter, l -> l.getRejectedCount(reason))
+                    .description("Ssh sessions refused because of session limits")
+                    .tag("reason", reason.name())
+                    .register(registry);
+        }
+        FunctionTimer.builder(PREFIX + ".queue.wait", limiter, SshShellSessionLimiter::getWaitCount,
+                        l -> l.getWaitTotalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .description("Time spent by ssh sessions waiting for a free slot")
+                .register(registry);
+        FunctionTimer.builder(PREFIX + ".startup-timing", sessionRegistry, SshShellSessionRegistry::getStartupCount,
+                        r -> r.getStartupTotalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .description("Time from ssh session start to first prompt")
+                .register(registry);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import org.apache.sshd.server.channel.ChannelSession;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of active ssh shell sessions, indexed by identifier and by channel
+ */
+@Component
+public class SshShellSessionRegistry {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final Map<Long, SshShellSession> byId = new ConcurrentHashMap<>();
+
+    private final Map<ChannelSession, SshShellSession> byChannel = new ConcurrentHashMap<>();
+
+    private final LongAdder startupCount = new LongAdder();
+
+    private final LongAdder startupTotalNanos = new LongAdder();
+
+    /**
+     * Register new session
+     *
+     * @param channel ssh channel
+     * @param user    authenticated user
+     * @return registered session
+     */
+    public SshShellSession register(ChannelSession channel, String user) {
+        SshShellSession session = new SshShellSession(ids.incrementAndGet(), user, channel);
+        byId.put(session.getId(), session);
+        byChannel.put(channel, session);
+        return session;
+    }
+
+    /**
+     * Unregister session of given channel
+     *
+     * @param channel ssh channel
+     * @return unregistered session, or null if not registered
+     */
+    public SshShellSession unregister(ChannelSession channel) {
+        SshShellSession session = byChannel.remove(channel);
+        if (session != null) {
+            byId.remove(session.getId());
+        }
+        return session;
+    }
+
+    /**
+     * Record startup time of session when its first prompt is displayed
+     *
+     * @param session ssh shell session
+     */
+    public void firstPrompt(SshShellSession session) {
+        long elapsed = session.firstPrompt();
+        if (elapsed >= 0) {
+            startupCount.increment();
+            startupTotalNanos.add(elapsed);
+        }
+    }
+
+    /**
+     * @param id session identifier
+     * @return session, or null if not found
+     */
+    public SshShellSession get(long id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @param channel ssh channel
+     * @return session, or null if not found
+     */
+    public SshShellSession get(ChannelSession channel) {
+        return byChannel.get(channel);
+    }
+
+    /**
+     * @return read only view of active sessions
+     */
+    public Collection<SshShellSession> sessions() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * @return number of active sessions
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * @return number of sessions which reached their first prompt
+     */
+    public long getStartupCount() {
+        return startupCount.sum();
+    }
+
+    /**
+     * @param unit time unit
+     * @return total time from session start to first prompt
+     */
+    public double getStartupTotalTime(TimeUnit unit) {
+        return (double) startupTotalNanos.sum() / unit.toNanos(1);
+    }
+}
@@ -17,20 +17,20 @@
 package com.github.fonimus.ssh.shell.postprocess;
 
 import com.github.fonimus.ssh.shell.SshContext;
+import com.github.fonimus.ssh.shell.SshContextHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStyle;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.shell.ResultHandlerService;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.ParameterizedType;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Result handler service which save stacktrace in context (for stacktrace command)
@@ -43,22 +43,33 @@ public class ExtendedResultHandlerService implements ResultHandlerService {
 
     public static final ThreadLocal<Throwable> THREAD_CONTEXT = ThreadLocal.withInitial(() -> null);
 
+    private static final int CHUNK_SIZE = 8 * 1024;
+
     private final ResultHandlerService delegate;
-    private final Map<String, PostProcessor<?, ?>> postProcessorMap = new HashMap<>();
+    private final PostProcessorRegistry registry;
 
+    /**
+     * Constructor
+     *
+     * @param resultHandlerService delegate result handler service
+     * @param postProcessorList    post processors
+     * @deprecated use constructor with shared {@link PostProcessorRegistry}
+     */
+    @Deprecated
     public ExtendedResultHandlerService(ResultHandlerService resultHandlerService, List<PostProcessor<?, ?>> postProcessorList) {
+        this(resultHandlerService, new PostProcessorRegistry(postProcessorList));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param resultHandlerService delegate result handler service
+     * @param registry             post processor registry, shared with shell
+     */
+    @Autowired
+    public ExtendedResultHandlerService(ResultHandlerService resultHandlerService, PostProcessorRegistry registry) {
         this.delegate = resultHandlerService;
-        if (postProcessorList != null) {
-            for (PostProcessor<?, ?> postProcessor : postProcessorList) {
-                if (this.postProcessorMap.containsKey(postProcessor.getName())) {
-                    LOGGER.warn("Unable to register post processor for name [{}], it has already been registered",
-                            postProcessor.getName());
-                } else {
-                    this.postProcessorMap.put(postProcessor.getName(), postProcessor);
-                    LOGGER.debug("Post processor with name [{}] registered", postProcessor.getName());
-                }
-            }
-        }
+        this.registry = registry;
     }
 
     @Override
@@ -76,25 +87,60 @@ public class ExtendedResultHandlerService implements ResultHandlerService {
             THREAD_CONTEXT.set((Throwable) result);
         }
         Object obj = result;
-        SshContext ctx = SSH_THREAD_CONTEXT.get();
+        // output of streaming post processors, not materialized until needed
+        Stream<String> lines = null;
+        SshContext ctx = SshContextHolder.get();
         if (ctx != null && ctx.getPostProcessorsList() != null) {
-            for (PostProcessorObject postProcessorObject : ctx.getPostProcessorsList()) {
+            List<PostProcessorObject> stages = ctx.getPostProcessorsList();
+            for (int i = 0; i < stages.size(); i++) {
+                PostProcessorObject postProcessorObject = stages.get(i);
                 String name = postProcessorObject.getName();
-                PostProcessor postProcessor = postProcessorMap.get(name);
-                if (postProcessor == null) {
+                PostProcessorRegistry.Registration registration = registry.get(name);
+                if (registration == null) {
                     printLogWarn("Unknown post processor [" + name + "]");
                     continue;
                 }
-                Class<?> cls =
-                        ((Class<?>) ((ParameterizedType) (postProcessor.getClass().getGenericInterfaces())[0]).getActualTypeArguments()[0]);
-                if (!cls.isAssignableFrom(obj.getClass())) {
+                PostProcessor postProcessor = registration.getPostProcessor();
+                try {
+                    if (registration.isStreaming()) {
+                        // command result is converted to string once, lines of a string are read without copy
+                        LOGGER.debug("Chaining streaming post processor [{}] with parameters {}", name,
+                                postProcessorObject.getParameters());
+                        lines = ((StreamingPostProcessor) postProcessor).process(
+                                lines != null ? lines : ((String) registry.convert(obj, String.class)).lines(),
+                                postProcessorObject.getParameters());
+                        continue;
+                    }
+                    if (lines != null) {
+                        obj = join(lines);
+                        lines = null;
+                    }
+                } catch (Exception e) {
+                    printError(e.getMessage());
+                    return;
+                }
+                Class<?> cls = registration.getInputType();
+                Object converted;
+                try {
+                    // structured results (like json trees) are kept as is when post processor can handle them
+                    converted = registry.convert(obj, registration);
+                } catch (RuntimeException e) {
+                    printError(e.getMessage());
+                    return;
+                }
+                if (converted == null) {
                     printLogWarn("Post processor [" + name + "] can only apply to class [" + cls.getName() +
                             "] (current object class is " + obj.getClass().getName() + ")");
                 } else {
                     LOGGER.debug("Applying post processor [{}] with parameters {}", name,
                             postProcessorObject.getParameters());
                     try {
-                        obj = postProcessor.process(obj, postProcessorObject.getParameters());
+                        if (postProcessor instanceof StructuredPostProcessor && rendersNext(stages, i)) {
+                            obj = ((StructuredPostProcessor) postProcessor).processStructured(converted,
+                                    postProcessorObject.getParameters());
+                        } else {
+                            obj = postProcessor.process(converted, postProcessorObject.getParameters());
+                        }
                     } catch (Exception e) {
                         printError(e.getMessage());
                         return;
@@ -104,13 +150,73 @@ public class ExtendedResultHandlerService implements ResultHandlerService {
         }
         if (ctx == null || !ctx.isBackground()) {
             // do not display anything if is background script
-            delegate.handle(obj);
+            if (lines != null) {
+                write(lines);
+            } else {
+                Object rendered;
+                try {
+                    rendered = registry.render(obj);
+                } catch (RuntimeException e) {
+                    printError(e.getMessage());
+                    return;
+                }
+                delegate.handle(rendered);
+            }
+        } else if (lines != null) {
+            lines.close();
         }
         if (ctx != null && ctx.isBackground()) {
             ctx.incrementBackgroundCount();
         }
     }
 
+    /**
+     * @param stages post processors stages
+     * @param index  current stage index
+     * @return true if next post processor can render structured results
+     */
+    private boolean rendersNext(List<PostProcessorObject> stages, int index) {
+        if (index + 1 >= stages.size()) {
+            return false;
+        }
+        PostProcessorRegistry.Registration next = registry.get(stages.get(index + 1).getName());
+        return next != null && next.getPostProcessor() instanceof ResultRenderer;
+    }
+
+    private static String join(Stream<String> lines) {
+        try (lines) {
+            return lines.collect(Collectors.joining("\n"));
+        }
+    }
+
+    /**
+     * Write lines as they come out of post processors, by chunks
+     *
+     * @param lines lines to write
+     */
+    private void write(Stream<String> lines) {
+        StringBuilder chunk = new StringBuilder();
+        try (lines) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                if (chunk.length() > 0) {
+                    chunk.append('\n');
+                }
+                chunk.append(iterator.next());
+                if (chunk.length() >= CHUNK_SIZE) {
+                    delegate.handle(chunk.toString());
+                    chunk.setLength(0);
+                }
+            }
+        } catch (RuntimeException e) {
+            printError(e.getMessage());
+            return;
+        }
+        if (chunk.length() > 0) {
+            delegate.handle(chunk.toString());
+        }
+    }
+
     private void printLogWarn(String warn) {
         delegate.handle(new AttributedString(warn, AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW)).toAnsi());
         LOGGER.warn(warn);
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+import com.github.fonimus.ssh.shell.postprocess.provided.SavePostProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.jline.utils.AttributedCharSequence;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+
+/**
+ * <p>Registered post processors, with their input and output types resolved once</p>
+ * <p>Also converts results to post processor input types when possible: everything can be converted to a string
+ * (json when object has no proper string representation and 'pretty' post processor is available). Structured
+ * results are only rendered to text for post processors which cannot render them</p>
+ */
+@Slf4j
+public class PostProcessorRegistry {
+
+    private static final String PRETTY = "pretty";
+
+    private static final ClassValue<Boolean> HAS_TO_STRING = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("toString").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+
+    private final List<ResultRenderer> renderers = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param postProcessors post processors to register, first one wins when names are duplicated
+     */
+    public PostProcessorRegistry(List<PostProcessor<?, ?>> postProcessors) {
+        if (postProcessors != null) {
+            for (PostProcessor<?, ?> postProcessor : postProcessors) {
+                if (registrations.containsKey(postProcessor.getName())) {
+                    LOGGER.warn("Unable to register post processor for name [{}], it has already been registered",
+                            postProcessor.getName());
+                } else {
+                    registrations.put(postProcessor.getName(), new Registration(postProcessor));
+                    if (postProcessor instanceof ResultRenderer) {
+                        renderers.add((ResultRenderer) postProcessor);
+                    }
+                    LOGGER.debug("Post processor with name [{}] registered", postProcessor.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name post processor name
+     * @return registration, or null if unknown
+     */
+    public Registration get(String name) {
+        return registrations.get(name);
+    }
+
+    /**
+     * @return registered post processors names
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(registrations.keySet());
+    }
+
+    /**
+     * Check that post processors chain can apply, before running the command
+     *
+     * @param stages post processors stages
+     * @return error message, or null if chain is valid
+     */
+    public String validate(List<PostProcessorObject> stages) {
+        // command result type is not known until it runs
+        Class<?> current = Object.class;
+        String previous = null;
+        for (PostProcessorObject stage : stages) {
+            Registration registration = registrations.get(stage.getName());
+            if (registration == null) {
+                if (SavePostProcessor.SAVE.equals(stage.getName())) {
+                    // '>' is part of command line syntax, reported at runtime if not registered
+                    continue;
+                }
+                return "Unknown post processor [" + stage.getName() + "]";
+            }
+            if (current != Object.class && !canConvert(current, registration.getInputType())) {
+                return "Post processor [" + stage.getName() + "] can only apply to class [" +
+                        registration.getInputType().getName() + "] (post processor [" + previous +
+                        "] produces " + current.getName() + ")";
+            }
+            current = registration.getOutputType();
+            previous = stage.getName();
+        }
+        return null;
+    }
+
+    /**
+     * @param from source type
+     * @param to   target type
+     * @return true if objects of source type can be converted to target type
+     */
+    public boolean canConvert(Class<?> from, Class<?> to) {
+        return to.isAssignableFrom(from) || to == String.class;
+    }
+
+    /**
+     * Convert object to input type of given post processor, structured results being kept only if post processor
+     * can render them
+     *
+     * @param obj          object to convert
+     * @param registration post processor registration
+     * @return converted object, or null if not possible
+     */
+    public Object convert(Object obj, Registration registration) {
+        PostProcessor<?, ?> postProcessor = registration.getPostProcessor();
+        if (postProcessor instanceof ResultRenderer && ((ResultRenderer) postProcessor).canRender(obj)) {
+            return convert(obj, registration.getInputType());
+        }
+        return convert(render(obj), registration.getInputType());
+    }
+
+    /**
+     * Convert object to post processor input type
+     *
+     * @param obj  object to convert
+     * @param type target type
+     * @return converted object, or null if not possible
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Object convert(Object obj, Class<?> type) {
+        if (type.isInstance(obj)) {
+            return obj;
+        }
+        if (type != String.class) {
+            return null;
+        }
+        if (obj instanceof AttributedCharSequence) {
+            return ((AttributedCharSequence) obj).toAnsi();
+        }
+        Object rendered = render(obj);
+        if (rendered != obj) {
+            return rendered;
+        }
+        Registration pretty = registrations.get(PRETTY);
+        if (!HAS_TO_STRING.get(obj.getClass()) && pretty != null && pretty.getInputType().isInstance(obj)) {
+            try {
+                Object json = render(((PostProcessor) pretty.getPostProcessor()).process(obj, Collections.emptyList()));
+                if (json instanceof String) {
+                    return json;
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Unable to convert object to json: {}", e.getMessage());
+            }
+        }
+        return obj.toString();
+    }
+
+    /**
+     * Render structured result to text, with first post processor able to do it
+     *
+     * @param obj result
+     * @return rendered text, or same object if not structured
+     */
+    public Object render(Object obj) {
+        for (ResultRenderer renderer : renderers) {
+            if (renderer.canRender(obj)) {
+                return renderer.render(obj);
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * Post processor registration
+     */
+    public static class Registration {
+
+        private final PostProcessor<?, ?> postProcessor;
+
+        private final Class<?> inputType;
+
+        private final Class<?> outputType;
+
+        Registration(PostProcessor<?, ?> postProcessor) {
+            this.postProcessor = postProcessor;
+            // user class to see through cglib proxies
+            ResolvableType type = ResolvableType.forClass(ClassUtils.getUserClass(postProcessor))
+                    .as(PostProcessor.class);
+            this.inputType = type.getGeneric(0).resolve(Object.class);
+            this.outputType = type.getGeneric(1).resolve(Object.class);
+        }
+
+        public PostProcessor<?, ?> getPostProcessor() {
+            return postProcessor;
+        }
+
+        public Class<?> getInputType() {
+            return inputType;
+        }
+
+        public Class<?> getOutputType() {
+            return outputType;
+        }
+
+        public boolean isStreaming() {
+            return postProcessor instanceof StreamingPostProcessor;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+/**
+ * <p>Post processor producing structured results (like json trees)</p>
+ * <p>Structured results are kept as is between post processors rendering them, and only rendered to text for
+ * other post processors or when displayed</p>
+ */
+public interface ResultRenderer {
+
+    /**
+     * @param result result
+     * @return true if result is structured and can be rendered by this post processor
+     */
+    boolean canRender(Object result);
+
+    /**
+     * Render structured result to text
+     *
+     * @param result result, for which {@link #canRender(Object)} is true
+     * @return text
+     */
+    String render(Object result);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>Post processor working line by line</p>
+ * <p>When chained, streaming post processors are applied lazily and their output is written as lines come out,
+ * without materializing the whole result between stages</p>
+ */
+public interface StreamingPostProcessor
+        extends PostProcessor<String, String> {
+
+    /**
+     * Process lines lazily
+     *
+     * @param lines      input lines
+     * @param parameters post processor parameters
+     * @return output lines
+     * @throws PostProcessorException if parameters are invalid
+     */
+    Stream<String> process(Stream<String> lines, List<String> parameters) throws PostProcessorException;
+
+    @Override
+    default String process(String result, List<String> parameters) throws PostProcessorException {
+        try (Stream<String> lines = process(result.lines(), parameters)) {
+            return lines.collect(Collectors.joining("\n"));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+import java.util.List;
+
+/**
+ * <p>Post processor which can also produce a structured result (like a json tree)</p>
+ * <p>Structured result is only used when following post processor can render it, instead of text which would be
+ * parsed again</p>
+ *
+ * @param <I> input type
+ * @param <O> output type of {@link #process(Object, List)}
+ */
+public interface StructuredPostProcessor<I, O>
+        extends PostProcessor<I, O> {
+
+    /**
+     * Process result to structured result, equivalent to output of {@link #process(Object, List)}
+     *
+     * @param result     result to process
+     * @param parameters post processor parameters
+     * @return structured result
+     * @throws PostProcessorException if result cannot be processed
+     */
+    Object processStructured(I result, List<String> parameters) throws PostProcessorException;
+}
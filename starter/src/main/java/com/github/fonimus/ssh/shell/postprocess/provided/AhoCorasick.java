@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * <p>Aho-Corasick automaton, to find if any of several literals is in a text with a single scan</p>
+ * <p>Transitions of each state are kept in sorted char arrays, and failure transitions are resolved at build time
+ * for the matched flag only, so that scanning does not allocate</p>
+ */
+final class AhoCorasick {
+
+    private static final int ROOT = 0;
+
+    private final boolean ignoreCase;
+
+    private char[][] keys = new char[16][];
+
+    private int[][] targets = new int[16][];
+
+    private int[] fail = new int[16];
+
+    private boolean[] matched = new boolean[16];
+
+    private int size = 1;
+
+    /**
+     * Constructor
+     *
+     * @param literals   literals to find, not empty
+     * @param ignoreCase ignore case when matching
+     */
+    AhoCorasick(List<String> literals, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        keys[ROOT] = new char[0];
+        targets[ROOT] = new int[0];
+        for (String literal : literals) {
+            int state = ROOT;
+            for (int i = 0; i < literal.length(); i++) {
+                char c = normalize(literal.charAt(i));
+                int next = next(state, c);
+                state = next >= 0 ? next : add(state, c);
+            }
+            matched[state] = true;
+        }
+        buildFailures();
+    }
+
+    /**
+     * @param text text to scan
+     * @return true if text contains any of the literals
+     */
+    boolean matches(CharSequence text) {
+        if (matched[ROOT]) {
+            return true;
+        }
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = normalize(text.charAt(i));
+            int next;
+            while ((next = next(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = Math.max(next, ROOT);
+            if (matched[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private char normalize(char c) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(keys[state], c);
+        return index >= 0 ? targets[state][index] : -1;
+    }
+
+    private int add(int state, char c) {
+        if (size == fail.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            fail = Arrays.copyOf(fail, capacity);
+            matched = Arrays.copyOf(matched, capacity);
+        }
+        int created = size++;
+        keys[created] = new char[0];
+        targets[created] = new int[0];
+        char[] stateKeys = keys[state];
+        int[] stateTargets = targets[state];
+        int index = -Arrays.binarySearch(stateKeys, c) - 1;
+        char[] newKeys = new char[stateKeys.length + 1];
+        int[] newTargets = new int[stateTargets.length + 1];
+        System.arraycopy(stateKeys, 0, newKeys, 0, index);
+        System.arraycopy(stateTargets, 0, newTargets, 0, index);
+        newKeys[index] = c;
+        newTargets[index] = created;
+        System.arraycopy(stateKeys, index, newKeys, index + 1, stateKeys.length - index);
+        System.arraycopy(stateTargets, index, newTargets, index + 1, stateTargets.length - index);
+        keys[state] = newKeys;
+        targets[state] = newTargets;
+        return created;
+    }
+
+    private void buildFailures() {
+        // breadth first, so that failure state of parent is known
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[ROOT]) {
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < keys[state].length; i++) {
+                char c = keys[state][i];
+                int child = targets[state][i];
+                int f = fail[state];
+                int next;
+                while ((next = next(f, c)) < 0 && f != ROOT) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : ROOT;
+                matched[child] |= matched[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Small least recently used cache, for compiled matchers shared across post processor invocations
+ *
+ * @param <K> key type
+ * @param <V> compiled value type
+ */
+final class CompiledCache<K, V> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<K, V> cache;
+
+    /**
+     * Constructor
+     *
+     * @param maxSize maximum number of compiled values kept
+     */
+    CompiledCache(int maxSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get compiled value, compiling it outside of lock if missing
+     *
+     * @param key      key
+     * @param compiler compiler
+     * @return compiled value
+     */
+    V get(K key, Function<K, V> compiler) {
+        V value;
+        lock.lock();
+        try {
+            value = cache.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (value == null) {
+            value = compiler.apply(key);
+            lock.lock();
+            try {
+                cache.put(key, value);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.SshShellProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * <p>Files written by save post processor, kept open while their owners (session or background script contexts)
+ * are running</p>
+ * <p>Writes are buffered and flushed periodically when a scheduler is given. Files ending with .gz or .zst are
+ * compressed (zstd needs com.github.luben:zstd-jni in classpath) and rotated when they reach maximum size</p>
+ */
+@Slf4j
+public class FileSinkRegistry
+        implements Closeable {
+
+    private static final String GZIP = ".gz";
+
+    private static final String ZSTD = ".zst";
+
+    private final SshShellProperties.Save properties;
+
+    // lock instead of monitor so that writing virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Path, FileSink> sinks = new HashMap<>();
+
+    private final ScheduledFuture<?> flushTask;
+
+    /**
+     * Registry with default properties, without periodic flush
+     */
+    public FileSinkRegistry() {
+        this(new SshShellProperties.Save(), null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param properties save properties
+     * @param scheduler  scheduler for periodic flushes, if null files are flushed on each write
+     */
+    public FileSinkRegistry(SshShellProperties.Save properties, ScheduledExecutorService scheduler) {
+        this.properties = properties;
+        long interval = properties.getFlushInterval() != null ? properties.getFlushInterval().toMillis() : 0;
+        this.flushTask = scheduler != null && interval > 0 ?
+                scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS) : null;
+    }
+
+    /**
+     * Write content to file
+     *
+     * @param owner    owner keeping file open until released, null to close file right after writing
+     * @param path     file path
+     * @param content  content to write
+     * @param truncate truncate file before writing
+     * @param flush    flush file right after writing, otherwise it will be done periodically
+     * @throws IOException if file cannot be written
+     */
+    public void write(Object owner, Path path, byte[] content, boolean truncate, boolean flush) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        lock.lock();
+        try {
+            FileSink sink = sinks.get(key);
+            if (sink == null) {
+                sink = new FileSink(key, truncate);
+                if (owner != null) {
+                    sinks.put(key, sink);
+                }
+            } else if (truncate) {
+                sink.reopen();
+            }
+            try {
+                sink.write(content);
+                if (flush || owner == null || flushTask == null) {
+                    sink.flush();
+                }
+            } catch (IOException e) {
+                sinks.remove(key);
+                sink.closeQuietly();
+                throw e;
+            }
+            if (owner != null) {
+                sink.owners.add(owner);
+            } else if (sink.owners.isEmpty()) {
+                sink.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release files of given owner, closing the ones not used by other owners
+     *
+     * @param owner owner
+     */
+    public void release(Object owner) {
+        lock.lock();
+        try {
+            Iterator<FileSink> iterator = sinks.values().iterator();
+            while (iterator.hasNext()) {
+                FileSink sink = iterator.next();
+                if (sink.owners.remove(owner) && sink.owners.isEmpty()) {
+                    iterator.remove();
+                    sink.closeQuietly();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flush all open files
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            for (FileSink sink : sinks.values()) {
+                try {
+                    sink.flush();
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to flush file {}: {}", sink.path, e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of open files
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return sinks.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        lock.lock();
+        try {
+            sinks.values().forEach(FileSink::closeQuietly);
+            sinks.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param path  file path
+     * @param index rotation index
+     * @return rotated file path, index being put before compression extension
+     */
+    static Path rotated(Path path, int index) {
+        String name = path.getFileName().toString();
+        String extension = name.endsWith(GZIP) ? GZIP : name.endsWith(ZSTD) ? ZSTD : "";
+        return path.resolveSibling(name.substring(0, name.length() - extension.length()) + "." + index + extension);
+    }
+
+    /**
+     * Open file, always accessed under registry lock
+     */
+    private final class FileSink {
+
+        private final Path path;
+
+        private final Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private CountingOutputStream channelOut;
+
+        private OutputStream out;
+
+        private boolean compressed;
+
+        private long size;
+
+        private boolean dirty;
+
+        private FileSink(Path path, boolean truncate) throws IOException {
+            this.path = path;
+            open(truncate);
+        }
+
+        private void open(boolean truncate) throws IOException {
+            FileChannel channel = FileChannel.open(path, CREATE, WRITE, truncate ? TRUNCATE_EXISTING : APPEND);
+            try {
+                size = channel.size();
+                channelOut = new CountingOutputStream(Channels.newOutputStream(channel));
+                String name = path.getFileName().toString();
+                OutputStream target = channelOut;
+                if (name.endsWith(GZIP)) {
+                    target = new GZIPOutputStream(channelOut, properties.getBufferSize(), true);
+                } else if (name.endsWith(ZSTD)) {
+                    target = zstd(channelOut);
+                }
+                compressed = target != channelOut;
+                out = new BufferedOutputStream(target, properties.getBufferSize());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void write(byte[] content) throws IOException {
+            out.write(content);
+            dirty = true;
+            if (!compressed) {
+                size += content.length;
+            }
+            // compressed size is only known once compressor has written to file
+            long current = compressed ? size + channelOut.count : size;
+            if (properties.getMaxFileSize() > 0 && current >= properties.getMaxFileSize()) {
+                rotate();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (dirty) {
+                out.flush();
+                dirty = false;
+            }
+        }
+
+        private void rotate() throws IOException {
+            close();
+            int maxFiles = Math.max(0, properties.getMaxFiles());
+            if (maxFiles == 0) {
+                Files.deleteIfExists(path);
+            } else {
+                Files.deleteIfExists(rotated(path, maxFiles));
+                for (int i = maxFiles - 1; i >= 1; i--) {
+                    Path rotated = rotated(path, i);
+                    if (Files.exists(rotated)) {
+                        Files.move(rotated, rotated(path, i + 1), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                Files.move(path, rotated(path, 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.debug("File {} rotated", path);
+            open(true);
+        }
+
+        private void reopen() throws IOException {
+            close();
+            open(true);
+        }
+
+        private void close() throws IOException {
+            dirty = false;
+            out.close();
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close file {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private static OutputStream zstd(OutputStream out) throws IOException {
+        try {
+            return (OutputStream) Class.forName("com.github.luben.zstd.ZstdOutputStream")
+                    .getConstructor(OutputStream.class).newInstance(out);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Zstandard compression needs com.github.luben:zstd-jni in classpath");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IOException("Unable to create zstd stream: " + e, e);
+        }
+    }
+
+    /**
+     * Count bytes actually written to file
+     */
+    private static final class CountingOutputStream
+            extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -16,17 +16,36 @@
 
 package com.github.fonimus.ssh.shell.postprocess.provided;
 
-import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
+import com.github.fonimus.ssh.shell.SshShellUtils;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.StreamingPostProcessor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Grep post processor
+ * <p>Grep post processor</p>
+ * <p>Several literal patterns are matched with a single scan of each line, and compiled patterns are cached
+ * across invocations</p>
  */
 @Slf4j
 public class GrepPostProcessor
-        implements PostProcessor<String, String> {
+        implements StreamingPostProcessor {
+
+    static final int CACHE_SIZE = 256;
+
+    static final CompiledCache<String, Pattern> PATTERNS = new CompiledCache<>(CACHE_SIZE);
+
+    static final CompiledCache<String, AhoCorasick> AUTOMATA = new CompiledCache<>(CACHE_SIZE);
+
+    private static final String SEPARATOR = "--";
 
     @Override
     public String getName() {
@@ -35,32 +54,180 @@ public class GrepPostProcessor
 
     @Override
     public String getDescription() {
-        return "Find pattern in result lines";
+        return "Find patterns in result lines: grep [-i] [-v] [-E] [-c] [-A N] [-B N] [-C N] PATTERN...";
     }
 
     @Override
-    public String process(String result, List<String> parameters) {
-        if (parameters == null || parameters.isEmpty()) {
+    public Stream<String> process(Stream<String> lines, List<String> parameters) throws PostProcessorException {
+        Options options = Options.parse(parameters);
+        if (options.patterns.isEmpty()) {
             LOGGER.debug("Cannot use [{}] post processor without any parameters", getName());
-            return result;
+            return lines;
+        }
+        Predicate<String> matcher = matcher(options);
+        if (options.count) {
+            return LineProcessors.deferred(lines, s -> Stream.of(String.valueOf(s.filter(matcher).count())));
+        }
+        if (options.before == 0 && options.after == 0) {
+            return lines.filter(matcher);
+        }
+        return StreamSupport.stream(new ContextSpliterator(lines.iterator(), matcher, options.before, options.after),
+                false).onClose(lines::close);
+    }
+
+    private static Predicate<String> matcher(Options options) throws PostProcessorException {
+        Predicate<String> matcher;
+        if (options.regex) {
+            String regex = options.patterns.stream().map(p -> "(?:" + p + ")").collect(Collectors.joining("|"));
+            int flags = options.ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            Pattern pattern;
+            try {
+                pattern = PATTERNS.get(flags + ":" + regex, key -> Pattern.compile(regex, flags));
+            } catch (PatternSyntaxException e) {
+                throw new PostProcessorException("Invalid pattern: " + e.getDescription());
+            }
+            matcher = line -> pattern.matcher(line).find();
+        } else if (options.patterns.contains("")) {
+            matcher = line -> true;
+        } else if (options.patterns.size() == 1 && !options.ignoreCase) {
+            String literal = options.patterns.get(0);
+            matcher = line -> line.contains(literal);
         } else {
-            StringBuilder sb = new StringBuilder();
-            for (String line : result.split("\n")) {
-                if (contains(line, parameters)) {
-                    sb.append(line).append("\n");
+            AhoCorasick automaton = AUTOMATA.get((options.ignoreCase ? "i" : "") + '\0'
+                    + String.join("\0", options.patterns), key -> new AhoCorasick(options.patterns, options.ignoreCase));
+            matcher = automaton::matches;
+        }
+        // colored lines are matched on their visible text, but printed as is
+        Predicate<String> visible = matcher;
+        matcher = line -> visible.test(SshShellUtils.stripAnsi(line));
+        return options.invert ? matcher.negate() : matcher;
+    }
+
+    /**
+     * Grep options
+     */
+    private static final class Options {
+
+        private final List<String> patterns = new ArrayList<>();
+
+        private boolean ignoreCase;
+
+        private boolean invert;
+
+        private boolean regex;
+
+        private boolean count;
+
+        private int before;
+
+        private int after;
+
+        private static Options parse(List<String> parameters) throws PostProcessorException {
+            Options options = new Options();
+            if (parameters == null) {
+                return options;
+            }
+            boolean endOfOptions = false;
+            for (int i = 0; i < parameters.size(); i++) {
+                String parameter = parameters.get(i);
+                if (endOfOptions || parameter.length() < 2 || parameter.charAt(0) != '-') {
+                    options.patterns.add(parameter);
+                } else if (parameter.equals(SEPARATOR)) {
+                    endOfOptions = true;
+                } else if ("ABC".indexOf(parameter.charAt(1)) >= 0) {
+                    String value = parameter.length() > 2 ? parameter.substring(2)
+                            : i + 1 < parameters.size() ? parameters.get(++i) : null;
+                    int lines = LineProcessors.intParameter(value != null ? List.of(value) : List.of(), null, -1);
+                    if (lines < 0) {
+                        throw new PostProcessorException("Missing value for option [" + parameter + "]");
+                    }
+                    if (parameter.charAt(1) != 'A') {
+                        options.before = lines;
+                    }
+                    if (parameter.charAt(1) != 'B') {
+                        options.after = lines;
+                    }
+                } else if (parameter.chars().skip(1).allMatch(c -> "ivEc".indexOf(c) >= 0)) {
+                    options.ignoreCase |= parameter.indexOf('i') > 0;
+                    options.invert |= parameter.indexOf('v') > 0;
+                    options.regex |= parameter.indexOf('E') > 0;
+                    options.count |= parameter.indexOf('c') > 0;
+                } else {
+                    // not an option, kept as pattern
+                    options.patterns.add(parameter);
                 }
             }
-            return sb.toString().isEmpty() ? sb.toString() : sb.substring(0, sb.toString().length() - 1);
+            return options;
         }
     }
 
-    private boolean contains(String line, List<String> parameters) {
-        for (String parameter : parameters) {
-            if (parameter == null || parameter.isEmpty() || line.contains(parameter)) {
-                return true;
+    /**
+     * Matching lines with context lines around them, groups being separated by '--'
+     */
+    private static final class ContextSpliterator
+            extends Spliterators.AbstractSpliterator<String> {
+
+        private final Iterator<String> lines;
+
+        private final Predicate<String> matcher;
+
+        private final int before;
+
+        private final int after;
+
+        private final Deque<String> previous = new ArrayDeque<>();
+
+        private final Deque<String> output = new ArrayDeque<>();
+
+        private int remainingAfter;
+
+        private boolean printed;
+
+        private boolean gap;
+
+        private ContextSpliterator(Iterator<String> lines, Predicate<String> matcher, int before, int after) {
+            super(Long.MAX_VALUE, ORDERED);
+            this.lines = lines;
+            this.matcher = matcher;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            while (output.isEmpty() && lines.hasNext()) {
+                String line = lines.next();
+                if (matcher.test(line)) {
+                    if (printed && gap) {
+                        output.add(SEPARATOR);
+                    }
+                    output.addAll(previous);
+                    previous.clear();
+                    output.add(line);
+                    printed = true;
+                    gap = false;
+                    remainingAfter = after;
+                } else if (remainingAfter > 0) {
+                    output.add(line);
+                    remainingAfter--;
+                } else {
+                    if (before > 0) {
+                        if (previous.size() == before) {
+                            previous.poll();
+                            gap = true;
+                        }
+                        previous.add(line);
+                    } else {
+                        gap = true;
+                    }
+                }
             }
+            String line = output.poll();
+            if (line == null) {
+                return false;
+            }
+            action.accept(line);
+            return true;
         }
-        return false;
     }
-
 }
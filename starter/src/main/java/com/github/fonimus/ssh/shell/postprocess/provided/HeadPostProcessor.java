@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.StreamingPostProcessor;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * <p>Head post processor</p>
+ * <p>Stops reading previous stages once enough lines have been produced</p>
+ */
+public class HeadPostProcessor
+        implements StreamingPostProcessor {
+
+    public static final int DEFAULT_LINES = 10;
+
+    @Override
+    public String getName() {
+        return "head";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Keep first lines of result (default 10): head [N]";
+    }
+
+    @Override
+    public Stream<String> process(Stream<String> lines, List<String> parameters) throws PostProcessorException {
+        int count = LineProcessors.intParameter(parameters, "-n",
+                LineProcessors.intParameter(parameters, null, DEFAULT_LINES));
+        return lines.limit(count);
+    }
+}
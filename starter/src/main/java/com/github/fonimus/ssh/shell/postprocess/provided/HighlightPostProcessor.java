@@ -18,17 +18,30 @@ package com.github.fonimus.ssh.shell.postprocess.provided;
 
 import com.github.fonimus.ssh.shell.PromptColor;
 import com.github.fonimus.ssh.shell.SshShellHelper;
-import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
+import com.github.fonimus.ssh.shell.SshShellUtils;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.StreamingPostProcessor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
 
 /**
- * Grep post processor
+ * <p>Highlight post processor</p>
+ * <p>All terms are matched together in a single pass over each line, existing ansi escape sequences being left
+ * untouched. Terms are literal unless -E is given</p>
  */
 @Slf4j
 public class HighlightPostProcessor
-        implements PostProcessor<String, String> {
+        implements StreamingPostProcessor {
+
+    public static final PromptColor DEFAULT_COLOR = PromptColor.YELLOW;
 
     @Override
     public String getName() {
@@ -37,23 +50,166 @@ public class HighlightPostProcessor
 
     @Override
     public String getDescription() {
-        return "Highlight some words in result";
+        return "Highlight some words in result: highlight [-i] [-E] [-c COLOR] TERM... [-c COLOR TERM...]";
     }
 
     @Override
-    public String process(String result, List<String> parameters) {
-        if (parameters == null || parameters.isEmpty()) {
-            LOGGER.debug("Cannot use [{}] post processor without any parameters", getName());
-            return result;
-        } else {
-            String finalResult = result;
-            for (String toHighlight : parameters) {
-                finalResult = finalResult.replaceAll(toHighlight,
-                        SshShellHelper.getBackgroundColoredMessage(toHighlight,
-                                PromptColor.YELLOW));
+    public Stream<String> process(Stream<String> lines, List<String> parameters) throws PostProcessorException {
+        List<Term> terms = new ArrayList<>();
+        boolean regex = false;
+        boolean ignoreCase = false;
+        if (parameters != null) {
+            PromptColor color = DEFAULT_COLOR;
+            boolean endOfOptions = false;
+            for (int i = 0; i < parameters.size(); i++) {
+                String parameter = parameters.get(i);
+                if (endOfOptions || parameter.length() < 2 || parameter.charAt(0) != '-') {
+                    if (!parameter.isEmpty()) {
+                        terms.add(new Term(parameter, color));
+                    }
+                } else if (parameter.equals("--")) {
+                    endOfOptions = true;
+                } else if (parameter.equals("-c")) {
+                    if (i + 1 >= parameters.size()) {
+                        throw new PostProcessorException("Missing color for option [-c]");
+                    }
+                    color = color(parameters.get(++i));
+                } else if (parameter.equals("-E")) {
+                    regex = true;
+                } else if (parameter.equals("-i")) {
+                    ignoreCase = true;
+                } else {
+                    terms.add(new Term(parameter, color));
+                }
             }
-            return finalResult;
+        }
+        if (terms.isEmpty()) {
+            LOGGER.debug("Cannot use [{}] post processor without any parameters", getName());
+            return lines;
+        }
+        Highlighter highlighter = new Highlighter(terms, regex, ignoreCase);
+        return lines.map(highlighter::highlight);
+    }
+
+    private static PromptColor color(String value) throws PostProcessorException {
+        try {
+            return PromptColor.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new PostProcessorException("Unknown color [" + value + "], available: "
+                    + Arrays.toString(PromptColor.values()));
         }
     }
 
+    /**
+     * Term to highlight
+     */
+    private static final class Term {
+
+        private final String value;
+
+        private final PromptColor color;
+
+        private Term(String value, PromptColor color) {
+            this.value = value;
+            this.color = color;
+        }
+    }
+
+    /**
+     * Single pattern alternating all terms, each in its own group, applied on text between ansi sequences
+     */
+    private static final class Highlighter {
+
+        private final Pattern pattern;
+
+        // per regex group: color prefix and suffix, null for groups inside user regex
+        private final String[] prefixes;
+
+        private final String[] suffixes;
+
+        private Highlighter(List<Term> terms, boolean regex, boolean ignoreCase) throws PostProcessorException {
+            List<Term> ordered = new ArrayList<>(terms);
+            if (!regex) {
+                // longest literal first, so that it wins when terms start at same position
+                ordered.sort(Comparator.comparingInt((Term t) -> t.value.length()).reversed());
+            }
+            StringBuilder sb = new StringBuilder();
+            List<String[]> groups = new ArrayList<>();
+            groups.add(null);
+            for (Term term : ordered) {
+                String value = regex ? term.value : Pattern.quote(term.value);
+                int inner;
+                try {
+                    inner = regex ? Pattern.compile(value).matcher("").groupCount() : 0;
+                } catch (PatternSyntaxException e) {
+                    throw new PostProcessorException("Invalid pattern: " + e.getDescription());
+                }
+                sb.append(sb.length() == 0 ? "(" : "|(").append(value).append(")");
+                groups.add(marks(term.color));
+                for (int i = 0; i < inner; i++) {
+                    groups.add(null);
+                }
+            }
+            String combined = sb.toString();
+            int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            this.pattern = GrepPostProcessor.PATTERNS.get(flags + ":" + combined, key -> Pattern.compile(combined, flags));
+            this.prefixes = new String[groups.size()];
+            this.suffixes = new String[groups.size()];
+            for (int i = 0; i < groups.size(); i++) {
+                if (groups.get(i) != null) {
+                    prefixes[i] = groups.get(i)[0];
+                    suffixes[i] = groups.get(i)[1];
+                }
+            }
+        }
+
+        private static String[] marks(PromptColor color) {
+            String marked = SshShellHelper.getBackgroundColoredMessage("x", color);
+            int index = marked.indexOf('x');
+            return new String[]{marked.substring(0, index), marked.substring(index + 1)};
+        }
+
+        private String highlight(String line) {
+            Matcher matcher = pattern.matcher(line);
+            StringBuilder sb = null;
+            int last = 0;
+            int segment = 0;
+            int i = 0;
+            while (true) {
+                int sequence = i < line.length() ? SshShellUtils.ansiSequenceLength(line, i) : 0;
+                if (i < line.length() && sequence == 0) {
+                    i++;
+                    continue;
+                }
+                // existing ansi sequences are never matched, nor split by a match
+                if (i > segment) {
+                    matcher.region(segment, i);
+                    while (matcher.find()) {
+                        if (matcher.start() == matcher.end()) {
+                            continue;
+                        }
+                        int group = 1;
+                        while (prefixes[group] == null || matcher.start(group) < 0) {
+                            group++;
+                        }
+                        if (sb == null) {
+                            sb = new StringBuilder(line.length() + 32);
+                        }
+                        sb.append(line, last, matcher.start()).append(prefixes[group])
+                                .append(line, matcher.start(), matcher.end()).append(suffixes[group]);
+                        last = matcher.end();
+                    }
+                }
+                if (i >= line.length()) {
+                    break;
+                }
+                i += sequence;
+                segment = i;
+            }
+            if (sb == null) {
+                return line;
+            }
+            return sb.append(line, last, line.length()).toString();
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Json path filter, using json pointer syntax with wildcards ('*') and array slices ('1:3', ':3', '1:')</p>
+ * <p>Used with jackson filtering parser or generator: subtrees which cannot match are skipped without being read
+ * as trees</p>
+ */
+final class JsonPathFilter
+        extends TokenFilter {
+
+    private final Segment segment;
+
+    private final boolean multiple;
+
+    private TokenFilter next;
+
+    private JsonPathFilter(Segment segment, boolean multiple) {
+        this.segment = segment;
+        this.multiple = multiple;
+    }
+
+    /**
+     * Compile json path
+     *
+     * @param path json pointer, with optional wildcards and slices
+     * @return filter to apply from root, {@link TokenFilter#INCLUDE_ALL} for root path
+     * @throws IllegalArgumentException if path is not a valid json pointer
+     */
+    static TokenFilter compile(String path) {
+        // same syntax checks as json pointer
+        JsonPointer.compile(path);
+        if (path == null || path.isEmpty()) {
+            return TokenFilter.INCLUDE_ALL;
+        }
+        List<Segment> segments = new ArrayList<>();
+        boolean multiple = false;
+        for (String raw : path.substring(1).split("/", -1)) {
+            Segment segment = Segment.parse(raw.replace("~1", "/").replace("~0", "~"));
+            multiple |= segment.isMultiple();
+            segments.add(segment);
+        }
+        TokenFilter next = TokenFilter.INCLUDE_ALL;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            JsonPathFilter filter = new JsonPathFilter(segments.get(i), multiple);
+            filter.next = next;
+            next = filter;
+        }
+        return next;
+    }
+
+    /**
+     * @param filter compiled filter
+     * @return true if filter can match several nodes
+     */
+    static boolean isMultiple(TokenFilter filter) {
+        return filter instanceof JsonPathFilter && ((JsonPathFilter) filter).multiple;
+    }
+
+    @Override
+    public TokenFilter includeProperty(String name) {
+        return segment.matches(name) ? next : null;
+    }
+
+    @Override
+    public TokenFilter includeElement(int index) {
+        return segment.matches(index) ? next : null;
+    }
+
+    @Override
+    protected boolean _includeScalar() {
+        // scalar found before end of path
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "[JsonPathFilter " + segment + "]";
+    }
+
+    /**
+     * Path segment
+     */
+    private static final class Segment {
+
+        private final String name;
+
+        private final boolean wildcard;
+
+        private final int index;
+
+        // slice, end excluded, -1 when not bounded
+        private final int from;
+
+        private final int to;
+
+        private Segment(String name, boolean wildcard, int index, int from, int to) {
+            this.name = name;
+            this.wildcard = wildcard;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        private static Segment parse(String name) {
+            if (name.equals("*")) {
+                return new Segment(name, true, -1, -1, -1);
+            }
+            int colon = name.indexOf(':');
+            if (colon >= 0 && colon == name.lastIndexOf(':') && isIndex(name.substring(0, colon), true)
+                    && isIndex(name.substring(colon + 1), true)) {
+                int from = colon == 0 ? 0 : Integer.parseInt(name.substring(0, colon));
+                int to = colon == name.length() - 1 ? -1 : Integer.parseInt(name.substring(colon + 1));
+                return new Segment(name, false, -1, from, to);
+            }
+            return new Segment(name, false, isIndex(name, false) ? Integer.parseInt(name) : -1, -1, -1);
+        }
+
+        private static boolean isIndex(String value, boolean emptyAllowed) {
+            if (value.isEmpty()) {
+                return emptyAllowed;
+            }
+            if (value.length() > 9 || (value.length() > 1 && value.charAt(0) == '0')) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isMultiple() {
+            return wildcard || from >= 0;
+        }
+
+        private boolean matches(String property) {
+            return wildcard || name.equals(property);
+        }
+
+        private boolean matches(int element) {
+            return wildcard || element == index || (from >= 0 && element >= from && (to < 0 || element < to));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
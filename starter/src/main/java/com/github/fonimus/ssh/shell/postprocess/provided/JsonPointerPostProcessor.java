@@ -16,9 +16,17 @@
 
 package com.github.fonimus.ssh.shell.postprocess.provided;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringGeneratorDelegate;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.ResultRenderer;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -26,12 +34,15 @@ import java.io.IOException;
 import java.util.List;
 
 /**
- * Json pointer post processor
+ * <p>Json pointer post processor</p>
+ * <p>Applies on json trees (from pretty post processor) without any parsing, on json text or on any object.
+ * Paths can contain wildcards ('*' segments) and array slices (like '0:2'), in which case all found nodes are
+ * returned as an array. Found nodes are kept as json trees for following post processors</p>
  */
 @Slf4j
 @AllArgsConstructor
 public class JsonPointerPostProcessor
-        implements PostProcessor<String, String> {
+        implements PostProcessor<Object, Object>, ResultRenderer {
 
     private final ObjectMapper mapper;
 
@@ -42,11 +53,11 @@ public class JsonPointerPostProcessor
 
     @Override
     public String getDescription() {
-        return "Json path (use pretty postprocessor first to get json from object)";
+        return "Json path on result, with optional wildcards and slices: json /contexts/*/beans/*/type";
     }
 
     @Override
-    public String process(String result, List<String> parameters) {
+    public Object process(Object result, List<String> parameters) {
         if (parameters == null || parameters.isEmpty()) {
             LOGGER.debug("Cannot use [{}] post processor without any parameters", getName());
         } else {
@@ -55,15 +66,18 @@ public class JsonPointerPostProcessor
             }
             String path = parameters.get(0);
             try {
-                JsonNode node = mapper.readTree(result).at(path);
+                TokenFilter filter = JsonPathFilter.compile(path);
+                JsonNode node;
+                if (result instanceof JsonNode && !JsonPathFilter.isMultiple(filter)) {
+                    // plain pointer on tree: found node is returned without any copy
+                    node = ((JsonNode) result).at(path);
+                } else {
+                    node = select(result, filter);
+                }
                 if (node.isMissingNode()) {
                     return "No node found with json path expression: " + path;
                 } else {
-                    if (node.isTextual()) {
-                        return node.asText();
-                    } else {
-                        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
-                    }
+                    return node;
                 }
             } catch (IOException e) {
                 LOGGER.warn("Unable to read tree", e);
@@ -74,4 +88,52 @@ public class JsonPointerPostProcessor
         }
         return result;
     }
+
+    /**
+     * Read only matching nodes: other subtrees are skipped by parser, or not even serialized for objects
+     *
+     * @param result json tree, json text or object
+     * @param filter json path filter
+     * @return found node, array of found nodes for paths with wildcards or slices, or missing node
+     * @throws IOException if result cannot be read as json
+     */
+    private JsonNode select(Object result, TokenFilter filter) throws IOException {
+        boolean multiple = JsonPathFilter.isMultiple(filter);
+        JsonParser parser;
+        if (result instanceof JsonNode) {
+            parser = ((JsonNode) result).traverse(mapper);
+        } else if (result instanceof String) {
+            parser = mapper.createParser((String) result);
+        } else {
+            TokenBuffer buffer = new TokenBuffer(mapper, false);
+            mapper.writeValue(new FilteringGeneratorDelegate(buffer, filter, TokenFilter.Inclusion.ONLY_INCLUDE_ALL,
+                    true), result);
+            parser = buffer.asParser();
+            // already filtered
+            filter = TokenFilter.INCLUDE_ALL;
+        }
+        try (JsonParser matches = new FilteringParserDelegate(parser, filter, TokenFilter.Inclusion.ONLY_INCLUDE_ALL,
+                true)) {
+            ArrayNode all = mapper.createArrayNode();
+            while (matches.nextToken() != null) {
+                JsonNode match = mapper.readTree(matches);
+                if (!multiple) {
+                    // first match is enough, rest of input is not read
+                    return match;
+                }
+                all.add(match);
+            }
+            return all.isEmpty() ? MissingNode.getInstance() : all;
+        }
+    }
+
+    @Override
+    public boolean canRender(Object result) {
+        return result instanceof JsonNode;
+    }
+
+    @Override
+    public String render(Object result) {
+        return PrettyJsonPostProcessor.render(mapper, (JsonNode) result);
+    }
 }
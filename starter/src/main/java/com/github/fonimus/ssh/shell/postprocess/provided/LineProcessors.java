@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Helpers for line oriented post processors (parameters parsing, deferred stages, column comparison)
+ */
+final class LineProcessors {
+
+    private LineProcessors() {
+        // helper class
+    }
+
+    /**
+     * Defer an operation which needs to consume all lines until output is actually read
+     *
+     * @param lines input lines
+     * @param op    operation producing output lines from input lines
+     * @return output lines
+     */
+    static Stream<String> deferred(Stream<String> lines, Function<Stream<String>, Stream<String>> op) {
+        return Stream.of(lines).flatMap(op).onClose(lines::close);
+    }
+
+    /**
+     * Get integer parameter
+     *
+     * @param parameters   post processor parameters
+     * @param option       option name (like -n), or null for first positional number
+     * @param defaultValue default value
+     * @return parameter value
+     * @throws PostProcessorException if value is not a positive number
+     */
+    static int intParameter(List<String> parameters, String option, int defaultValue) throws PostProcessorException {
+        if (parameters == null) {
+            return defaultValue;
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            String parameter = parameters.get(i);
+            if (option == null && !parameter.startsWith("-")) {
+                return toInt(parameter);
+            }
+            if (parameter.equals(option)) {
+                if (i + 1 >= parameters.size()) {
+                    throw new PostProcessorException("Missing value for option [" + option + "]");
+                }
+                return toInt(parameters.get(i + 1));
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @param parameters post processor parameters
+     * @param flag       flag name (like -r)
+     * @return true if flag is present
+     */
+    static boolean hasFlag(List<String> parameters, String flag) {
+        return parameters != null && parameters.contains(flag);
+    }
+
+    /**
+     * Get line comparator
+     *
+     * @param column  column to compare (starting at 1), or 0 for whole line
+     * @param numeric compare numbers by value (non numbers come after numbers)
+     * @return comparator
+     */
+    static Comparator<String> comparator(int column, boolean numeric) {
+        return Comparator.comparing(line -> LineKey.of(line, column, numeric));
+    }
+
+    /**
+     * @param line   line
+     * @param column column to get (starting at 1)
+     * @return column value, or empty string if line does not have enough columns
+     */
+    static String column(String line, int column) {
+        int current = 0;
+        int i = 0;
+        int length = line.length();
+        while (i < length) {
+            while (i < length && isSeparator(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSeparator(line.charAt(i))) {
+                i++;
+            }
+            if (start < i && ++current == column) {
+                return line.substring(start, i);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Columns are separated by spaces or table borders
+     */
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || c == '│' || c == '|';
+    }
+
+    private static int toInt(String value) throws PostProcessorException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 0) {
+                throw new PostProcessorException("Value [" + value + "] must be positive");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new PostProcessorException("Value [" + value + "] is not a number");
+        }
+    }
+
+    private static Double toDouble(String value) {
+        if (value.isEmpty() || !(Character.isDigit(value.charAt(0)) || value.charAt(0) == '-'
+                || value.charAt(0) == '+' || value.charAt(0) == '.')) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Line with its sort key computed once
+     */
+    static final class LineKey
+            implements Comparable<LineKey> {
+
+        private final String line;
+
+        private final String text;
+
+        private final Double number;
+
+        private LineKey(String line, String text, Double number) {
+            this.line = line;
+            this.text = text;
+            this.number = number;
+        }
+
+        /**
+         * @param line    line
+         * @param column  column to compare (starting at 1), or 0 for whole line
+         * @param numeric compare numbers by value (non numbers come after numbers)
+         * @return line key
+         */
+        static LineKey of(String line, int column, boolean numeric) {
+            String text = column > 0 ? column(line, column) : line;
+            return new LineKey(line, text, numeric ? toDouble(text) : null);
+        }
+
+        String getLine() {
+            return line;
+        }
+
+        @Override
+        public int compareTo(LineKey other) {
+            if (number != null && other.number != null) {
+                return Double.compare(number, other.number);
+            } else if (number != null) {
+                return -1;
+            } else if (other.number != null) {
+                return 1;
+            }
+            return text.compareTo(other.text);
+        }
+    }
+}
@@ -17,21 +17,25 @@
 package com.github.fonimus.ssh.shell.postprocess.provided;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
 import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.StructuredPostProcessor;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
- * Pretty json post processor
+ * <p>Pretty json post processor</p>
+ * <p>Produces pretty json text, or a json tree when followed by a post processor working on json trees (like
+ * json post processor), so that json is neither written nor parsed again</p>
  */
 @Slf4j
 @AllArgsConstructor
 public class PrettyJsonPostProcessor
-        implements PostProcessor<Object, String> {
+        implements StructuredPostProcessor<Object, String> {
 
     private final ObjectMapper mapper;
 
@@ -54,4 +58,35 @@ public class PrettyJsonPostProcessor
             throw new PostProcessorException("Unable to prettify object. " + e.getMessage(), e);
         }
     }
+
+    @Override
+    public JsonNode processStructured(Object result, List<String> parameters) throws PostProcessorException {
+        if (result instanceof JsonNode) {
+            return (JsonNode) result;
+        }
+        try {
+            return mapper.valueToTree(result);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unable to prettify object: {}", result);
+            throw new PostProcessorException("Unable to prettify object. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Text nodes are rendered as their raw value, other nodes with pretty printer
+     *
+     * @param mapper object mapper
+     * @param node   json tree
+     * @return text
+     */
+    static String render(ObjectMapper mapper, JsonNode node) {
+        if (node.isTextual()) {
+            return node.asText();
+        }
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Unable to write json. " + e.getMessage(), e);
+        }
+    }
 }
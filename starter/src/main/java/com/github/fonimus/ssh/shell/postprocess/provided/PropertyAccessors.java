@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Property accessors on result objects</p>
+ * <p>Getters (getX, isX, record like x()) and public fields are resolved once per class and property, as method
+ * handles</p>
+ */
+@Slf4j
+final class PropertyAccessors {
+
+    /**
+     * Returned when property does not exist
+     */
+    static final Object MISSING = new Object() {
+        @Override
+        public String toString() {
+            return "<missing>";
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    // marker handle for unknown property
+    private static final MethodHandle NONE = MethodHandles.constant(Object.class, MISSING);
+
+    private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private PropertyAccessors() {
+        // helper class
+    }
+
+    /**
+     * Get property value
+     *
+     * @param target   object, map, list or array
+     * @param property property name, map key, or index
+     * @return value, or {@link #MISSING}
+     */
+    static Object get(Object target, String property) {
+        if (target == null) {
+            return MISSING;
+        }
+        if (target instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) target;
+            Object value = map.get(property);
+            return value != null || map.containsKey(property) ? value : MISSING;
+        }
+        if (target instanceof List || target.getClass().isArray()) {
+            int index = index(property);
+            if (index >= 0) {
+                if (target instanceof List) {
+                    List<?> list = (List<?>) target;
+                    return index < list.size() ? list.get(index) : MISSING;
+                }
+                return index < Array.getLength(target) ? Array.get(target, index) : MISSING;
+            }
+        }
+        MethodHandle handle = ACCESSORS.get(target.getClass()).computeIfAbsent(property,
+                p -> accessor(target.getClass(), p));
+        if (handle == NONE) {
+            return MISSING;
+        }
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (Throwable e) {
+            LOGGER.debug("Unable to get property [{}] of {}: {}", property, target.getClass().getName(), e.toString());
+            return MISSING;
+        }
+    }
+
+    /**
+     * Elements of collection, array, or values of map
+     *
+     * @param target object
+     * @return elements, or null if object cannot be iterated
+     */
+    static Iterable<?> elements(Object target) {
+        if (target instanceof Iterable) {
+            return (Iterable<?>) target;
+        }
+        if (target instanceof Map) {
+            return ((Map<?, ?>) target).values();
+        }
+        if (target instanceof Object[]) {
+            return Arrays.asList((Object[]) target);
+        }
+        if (target != null && target.getClass().isArray()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(target); i++) {
+                list.add(Array.get(target, i));
+            }
+            return list;
+        }
+        return null;
+    }
+
+    private static int index(String property) {
+        if (property.isEmpty() || property.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < property.length(); i++) {
+            if (!Character.isDigit(property.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(property);
+    }
+
+    private static MethodHandle accessor(Class<?> type, String property) {
+        String capitalized = property.isEmpty() ? property :
+                Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (String name : new String[]{"get" + capitalized, "is" + capitalized, property}) {
+            Method method = publicMethod(type, name);
+            if (method != null && method.getReturnType() != void.class) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+                } catch (IllegalAccessException e) {
+                    LOGGER.debug("Cannot access method [{}] of {}: {}", name, type.getName(), e.getMessage());
+                }
+            }
+        }
+        for (String name : new String[]{"get" + capitalized, "is" + capitalized, property}) {
+            // public method of a non public class (like a private record), when its package is open to us
+            try {
+                Method method = type.getMethod(name);
+                if (method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())
+                        && method.trySetAccessible()) {
+                    return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+                }
+            } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                // not accessible
+            }
+        }
+        try {
+            Field field = type.getField(property);
+            if (!Modifier.isStatic(field.getModifiers()) && Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                return MethodHandles.publicLookup().unreflectGetter(field).asType(GETTER_TYPE);
+            }
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            // no such public field
+        }
+        return NONE;
+    }
+
+    /**
+     * Public method without parameters, declared by a public type so that it can be called from here (method of
+     * a private implementation class is looked up on its public interfaces or super classes)
+     */
+    private static Method publicMethod(Class<?> type, String name) {
+        Deque<Class<?>> types = new ArrayDeque<>();
+        Set<Class<?>> seen = new HashSet<>();
+        types.add(type);
+        while (!types.isEmpty()) {
+            Class<?> current = types.poll();
+            if (!seen.add(current)) {
+                continue;
+            }
+            if (Modifier.isPublic(current.getModifiers())) {
+                try {
+                    Method method = current.getMethod(name);
+                    if (!Modifier.isStatic(method.getModifiers())
+                            && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                        return method;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // not in this type, nor in its super types
+                    continue;
+                }
+            }
+            if (current.getSuperclass() != null) {
+                types.add(current.getSuperclass());
+            }
+            types.addAll(Arrays.asList(current.getInterfaces()));
+        }
+        return null;
+    }
+}
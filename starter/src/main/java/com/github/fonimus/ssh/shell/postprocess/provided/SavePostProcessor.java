@@ -16,6 +16,9 @@
 
 package com.github.fonimus.ssh.shell.postprocess.provided;
 
+import com.github.fonimus.ssh.shell.SshContext;
+import com.github.fonimus.ssh.shell.SshContextHolder;
+import com.github.fonimus.ssh.shell.SshShellUtils;
 import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
 import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
 import lombok.extern.slf4j.Slf4j;
@@ -23,14 +26,13 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
-import static java.nio.file.StandardOpenOption.APPEND;
-import static java.nio.file.StandardOpenOption.CREATE;
-
 /**
- * Post processor used to save console result into file
+ * <p>Post processor used to save console result into file</p>
+ * <p>Result is appended to file, unless -t option is given (used by '&gt;' whereas '&gt;&gt;' appends). Files are kept
+ * open in {@link FileSinkRegistry} until session or background script ends</p>
  */
 @Slf4j
 public class SavePostProcessor
@@ -38,7 +40,22 @@ public class SavePostProcessor
 
     public static final String SAVE = "save";
 
-    private static final String REPLACE_REGEX = "(\\x1b\\x5b|\\x9b)[\\x30-\\x3f]*[\\x20-\\x2f]*[\\x40-\\x7e]";
+    public static final String TRUNCATE = "-t";
+
+    private final FileSinkRegistry sinks;
+
+    public SavePostProcessor() {
+        this(new FileSinkRegistry());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sinks open files registry
+     */
+    public SavePostProcessor(FileSinkRegistry sinks) {
+        this.sinks = sinks;
+    }
 
     @Override
     public String getName() {
@@ -47,30 +64,43 @@ public class SavePostProcessor
 
     @Override
     public String getDescription() {
-        return "Post processor to save result to file (or use special character '>')";
+        return "Save result to file, truncating it with -t (or use special characters '>' and '>>')";
     }
 
     @Override
     public String process(Object result, List<String> parameters) throws PostProcessorException {
-        if (parameters == null || parameters.isEmpty()) {
-            throw new PostProcessorException("Cannot save without file path !");
-        } else {
-            if (parameters.size() != 1) {
-                LOGGER.debug("[{}] post processor only need one parameter, rest will be ignored", getName());
-            }
-            String path = parameters.get(0);
-            if (path == null || path.isEmpty()) {
-                throw new PostProcessorException("Cannot save without file path !");
+        List<String> paths = new ArrayList<>();
+        boolean truncate = false;
+        if (parameters != null) {
+            for (String parameter : parameters) {
+                if (TRUNCATE.equals(parameter)) {
+                    truncate = true;
+                } else {
+                    paths.add(parameter);
+                }
             }
-            File file = new File(path);
-            try {
-                String toWrite = string(result).replaceAll(REPLACE_REGEX, "") + "\n";
-                Files.writeString(file.toPath(), toWrite, CREATE, APPEND);
-                return "Result saved to file: " + file.getAbsolutePath();
-            } catch (IOException e) {
-                LOGGER.debug("Unable to write to file: " + file.getAbsolutePath(), e);
-                throw new PostProcessorException("Unable to write to file: " + file.getAbsolutePath() + ". " + e.getMessage(), e);
+        }
+        if (paths.size() > 1) {
+            LOGGER.debug("[{}] post processor only need one parameter, rest will be ignored", getName());
+        }
+        String path = paths.isEmpty() ? null : paths.get(0);
+        if (path == null || path.isEmpty()) {
+            throw new PostProcessorException("Cannot save without file path !");
+        }
+        File file = new File(path);
+        try {
+            String toWrite = SshShellUtils.stripAnsi(string(result)) + "\n";
+            SshContext ctx = SshContextHolder.get();
+            if (ctx != null) {
+                ctx.onClose(sinks, () -> sinks.release(ctx));
             }
+            // background scripts results are flushed periodically, others right away
+            sinks.write(ctx, file.toPath(), toWrite.getBytes(StandardCharsets.UTF_8), truncate,
+                    ctx == null || !ctx.isBackground());
+            return "Result saved to file: " + file.getAbsolutePath();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to write to file: " + file.getAbsolutePath(), e);
+            throw new PostProcessorException("Unable to write to file: " + file.getAbsolutePath() + ". " + e.getMessage(), e);
         }
     }
 
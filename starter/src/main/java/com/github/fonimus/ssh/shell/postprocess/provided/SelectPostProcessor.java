@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Select post processor</p>
+ * <p>Walks result objects directly (getters, fields, maps, lists), so that only selected values are read:
+ * {@code select PATH [where FIELD OP VALUE]... [fields FIELD,...] [sort [-]FIELD] [limit N]}</p>
+ * <p>Path and fields are dotted property names: a '[]' suffix or a '*' segment maps over elements of collections,
+ * arrays or map values</p>
+ */
+@Slf4j
+public class SelectPostProcessor
+        implements PostProcessor<Object, Object> {
+
+    private static final String WHERE = "where";
+
+    private static final String FIELDS = "fields";
+
+    private static final String SORT = "sort";
+
+    private static final String LIMIT = "limit";
+
+    private static final List<String> OPERATORS = Arrays.asList("==", "!=", ">=", "<=", ">", "<", "~");
+
+    @Override
+    public String getName() {
+        return "select";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Select values from result objects: select PATH [where FIELD OP VALUE] [fields F1,F2] [sort [-]FIELD] " +
+                "[limit N]";
+    }
+
+    @Override
+    public Object process(Object result, List<String> parameters) throws PostProcessorException {
+        Query query = Query.parse(parameters);
+        if (!query.isMapped() && !query.hasClauses()) {
+            // single value
+            Object value = result;
+            for (String segment : query.path) {
+                value = PropertyAccessors.get(value, segment);
+                if (value == PropertyAccessors.MISSING) {
+                    return "No value found with select path: " + String.join(".", query.path);
+                }
+            }
+            return value != null ? value : "null";
+        }
+        Stream<Object> items = walk(Stream.of(result), query.path)
+                .filter(v -> v != PropertyAccessors.MISSING);
+        for (Predicate<Object> condition : query.conditions) {
+            items = items.filter(condition);
+        }
+        if (query.sort != null) {
+            Comparator<Object> comparator = Comparator.comparing(item -> value(item, query.sort),
+                    SelectPostProcessor::compare);
+            items = items.sorted(query.descending ? comparator.reversed() : comparator);
+        }
+        if (query.limit >= 0) {
+            items = items.limit(query.limit);
+        }
+        if (!query.fields.isEmpty()) {
+            items = items.map(item -> project(item, query.fields));
+        }
+        return new Selection(items.collect(Collectors.toList()));
+    }
+
+    private static Stream<Object> walk(Stream<Object> items, List<String> path) {
+        for (String segment : path) {
+            String name = segment.endsWith("[]") ? segment.substring(0, segment.length() - 2) : segment;
+            if (!name.isEmpty() && !name.equals("*")) {
+                items = items.map(item -> PropertyAccessors.get(item, name));
+            }
+            if (isMapping(segment)) {
+                items = items.flatMap(SelectPostProcessor::elements);
+            }
+        }
+        return items;
+    }
+
+    private static boolean isMapping(String segment) {
+        return segment.equals("*") || segment.endsWith("[]");
+    }
+
+    private static Stream<Object> elements(Object item) {
+        Iterable<?> elements = PropertyAccessors.elements(item);
+        if (elements == null) {
+            return Stream.empty();
+        }
+        return StreamSupport.stream(elements.spliterator(), false).map(Object.class::cast);
+    }
+
+    private static Object value(Object item, List<String> field) {
+        Object value = item;
+        for (String segment : field) {
+            value = PropertyAccessors.get(value, segment);
+            if (value == PropertyAccessors.MISSING) {
+                return null;
+            }
+        }
+        return value;
+    }
+
+    private static Object project(Object item, List<List<String>> fields) {
+        if (fields.size() == 1) {
+            return value(item, fields.get(0));
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (List<String> field : fields) {
+            row.put(String.join(".", field), value(item, field));
+        }
+        return row;
+    }
+
+    /**
+     * Numbers are compared numerically, other values as strings, nulls first
+     */
+    private static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        Double da = number(a);
+        Double db = number(b);
+        if (da != null && db != null) {
+            return Double.compare(da, db);
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            @SuppressWarnings("unchecked")
+            int result = ((Comparable<Object>) a).compareTo(b);
+            return result;
+        }
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    private static Double number(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Predicate<Object> condition(List<String> field, String operator, String operand) {
+        Object expected = operand.equals("null") ? null : operand;
+        return item -> {
+            Object value = value(item, field);
+            switch (operator) {
+                case "==":
+                    return expected == null ? value == null : value != null && compare(value, expected) == 0;
+                case "!=":
+                    return expected == null ? value != null : value == null || compare(value, expected) != 0;
+                case "~":
+                    return value != null && String.valueOf(value).contains(operand);
+                default:
+                    if (value == null || expected == null) {
+                        return false;
+                    }
+                    int comparison = compare(value, expected);
+                    return switch (operator) {
+                        case ">" -> comparison > 0;
+                        case ">=" -> comparison >= 0;
+                        case "<" -> comparison < 0;
+                        default -> comparison <= 0;
+                    };
+            }
+        };
+    }
+
+    /**
+     * Parsed select parameters
+     */
+    private static final class Query {
+
+        private List<String> path = Collections.emptyList();
+
+        private final List<Predicate<Object>> conditions = new ArrayList<>();
+
+        private final List<List<String>> fields = new ArrayList<>();
+
+        private List<String> sort;
+
+        private boolean descending;
+
+        private int limit = -1;
+
+        private boolean isMapped() {
+            return path.stream().anyMatch(SelectPostProcessor::isMapping);
+        }
+
+        private boolean hasClauses() {
+            return !conditions.isEmpty() || !fields.isEmpty() || sort != null || limit >= 0;
+        }
+
+        private static Query parse(List<String> parameters) throws PostProcessorException {
+            Query query = new Query();
+            List<String> params = parameters != null ? parameters : Collections.emptyList();
+            int i = 0;
+            if (!params.isEmpty() && !isClause(params.get(0))) {
+                query.path = field(params.get(0));
+                i++;
+            }
+            while (i < params.size()) {
+                String clause = params.get(i++);
+                switch (clause) {
+                    case WHERE -> {
+                        if (i + 3 > params.size() || !OPERATORS.contains(params.get(i + 1))) {
+                            throw new PostProcessorException("Expected [where FIELD OP VALUE], with OP in " + OPERATORS);
+                        }
+                        query.conditions.add(condition(field(params.get(i)), params.get(i + 1), params.get(i + 2)));
+                        i += 3;
+                    }
+                    case FIELDS -> {
+                        for (String field : next(params, i++, clause).split(",")) {
+                            if (!field.isBlank()) {
+                                query.fields.add(field(field.trim()));
+                            }
+                        }
+                    }
+                    case SORT -> {
+                        String sort = next(params, i++, clause);
+                        query.descending = sort.startsWith("-");
+                        query.sort = field(query.descending ? sort.substring(1) : sort);
+                    }
+                    case LIMIT -> {
+                        String limit = next(params, i++, clause);
+                        try {
+                            query.limit = Integer.parseInt(limit);
+                        } catch (NumberFormatException e) {
+                            query.limit = -1;
+                        }
+                        if (query.limit < 0) {
+                            throw new PostProcessorException("Invalid limit [" + limit + "]");
+                        }
+                    }
+                    default -> throw new PostProcessorException("Unknown select clause [" + clause + "], expected one of "
+                            + Arrays.asList(WHERE, FIELDS, SORT, LIMIT));
+                }
+            }
+            return query;
+        }
+
+        private static boolean isClause(String parameter) {
+            return parameter.equals(WHERE) || parameter.equals(FIELDS) || parameter.equals(SORT)
+                    || parameter.equals(LIMIT);
+        }
+
+        private static String next(List<String> params, int i, String clause) throws PostProcessorException {
+            if (i >= params.size()) {
+                throw new PostProcessorException("Missing value for [" + clause + "]");
+            }
+            return params.get(i);
+        }
+
+        private static List<String> field(String expression) {
+            String trimmed = expression.startsWith(".") ? expression.substring(1) : expression;
+            if (trimmed.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Arrays.asList(trimmed.split("\\."));
+        }
+    }
+
+    /**
+     * Selected values, displayed one per line
+     */
+    static final class Selection
+            extends AbstractList<Object> {
+
+        private final List<Object> values;
+
+        private Selection(List<Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public String toString() {
+            return values.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+        }
+    }
+}
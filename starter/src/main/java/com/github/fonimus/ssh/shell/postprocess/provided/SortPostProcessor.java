@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.StreamingPostProcessor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Sort post processor</p>
+ * <p>Lines are sorted in memory up to a threshold, then sorted chunks are spilled to temporary files and merged</p>
+ */
+@Slf4j
+public class SortPostProcessor
+        implements StreamingPostProcessor {
+
+    public static final long DEFAULT_MAX_IN_MEMORY_CHARS = 8L * 1024 * 1024;
+
+    private final long maxInMemoryChars;
+
+    public SortPostProcessor() {
+        this(DEFAULT_MAX_IN_MEMORY_CHARS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxInMemoryChars number of characters sorted in memory before spilling to disk
+     */
+    public SortPostProcessor(long maxInMemoryChars) {
+        this.maxInMemoryChars = maxInMemoryChars;
+    }
+
+    @Override
+    public String getName() {
+        return "sort";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Sort result lines, with -n for numeric sort and -r to reverse: sort [-n] [-r] [-k COLUMN]";
+    }
+
+    @Override
+    public Stream<String> process(Stream<String> lines, List<String> parameters) throws PostProcessorException {
+        int column = LineProcessors.intParameter(parameters, "-k", 0);
+        boolean numeric = LineProcessors.hasFlag(parameters, "-n");
+        boolean reverse = LineProcessors.hasFlag(parameters, "-r");
+        List<Path> chunks = new ArrayList<>();
+        return LineProcessors.deferred(lines, s -> sort(s, column, numeric, reverse, chunks))
+                .onClose(() -> delete(chunks));
+    }
+
+    private Stream<String> sort(Stream<String> lines, int column, boolean numeric, boolean reverse, List<Path> chunks) {
+        // keys computed once per line in memory, chunks heads only when merging
+        Comparator<LineProcessors.LineKey> order = reverse ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        List<LineProcessors.LineKey> buffer = new ArrayList<>();
+        long chars = 0;
+        Iterator<String> iterator = lines.iterator();
+        try {
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                buffer.add(LineProcessors.LineKey.of(line, column, numeric));
+                chars += line.length();
+                if (chars >= maxInMemoryChars) {
+                    chunks.add(spill(buffer, order));
+                    buffer.clear();
+                    chars = 0;
+                }
+            }
+            if (chunks.isEmpty()) {
+                buffer.sort(order);
+                return buffer.stream().map(LineProcessors.LineKey::getLine);
+            }
+            if (!buffer.isEmpty()) {
+                chunks.add(spill(buffer, order));
+                buffer.clear();
+            }
+            return merge(chunks, order, line -> LineProcessors.LineKey.of(line, column, numeric));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to sort lines: " + e.getMessage(), e);
+        }
+    }
+
+    private static Path spill(List<LineProcessors.LineKey> buffer, Comparator<LineProcessors.LineKey> order)
+            throws IOException {
+        buffer.sort(order);
+        Path file = Files.createTempFile("ssh-shell-sort-", ".txt");
+        LOGGER.debug("Spilling {} sorted lines to {}", buffer.size(), file);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (LineProcessors.LineKey key : buffer) {
+                writer.write(key.getLine());
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    private static Stream<String> merge(List<Path> chunks, Comparator<LineProcessors.LineKey> order,
+                                        Function<String, LineProcessors.LineKey> keys) throws IOException {
+        List<ChunkReader> readers = new ArrayList<>();
+        PriorityQueue<ChunkReader> queue = new PriorityQueue<>(chunks.size(),
+                (r1, r2) -> order.compare(r1.current, r2.current));
+        try {
+            for (Path chunk : chunks) {
+                ChunkReader reader = new ChunkReader(Files.newBufferedReader(chunk, StandardCharsets.UTF_8), keys);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } catch (IOException e) {
+            close(readers);
+            throw e;
+        }
+        Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super String> action) {
+                ChunkReader reader = queue.poll();
+                if (reader == null) {
+                    return false;
+                }
+                action.accept(reader.current.getLine());
+                try {
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read sorted lines: " + e.getMessage(), e);
+                }
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> close(readers));
+    }
+
+    private static void close(List<ChunkReader> readers) {
+        for (ChunkReader reader : readers) {
+            try {
+                reader.reader.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close sort chunk reader: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void delete(List<Path> chunks) {
+        for (Path chunk : chunks) {
+            try {
+                Files.deleteIfExists(chunk);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to delete sort chunk {}: {}", chunk, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sorted chunk reader, lines being only separated by '\n'
+     */
+    private static final class ChunkReader {
+
+        private final Reader reader;
+
+        private final Function<String, LineProcessors.LineKey> keys;
+
+        private final StringBuilder line = new StringBuilder();
+
+        private LineProcessors.LineKey current;
+
+        private ChunkReader(Reader reader, Function<String, LineProcessors.LineKey> keys) {
+            this.reader = reader;
+            this.keys = keys;
+        }
+
+        private boolean advance() throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    current = keys.apply(line.toString());
+                    return true;
+                }
+                line.append((char) c);
+            }
+            current = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
+import com.github.fonimus.ssh.shell.postprocess.StreamingPostProcessor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * <p>Top post processor</p>
+ * <p>Only the N greatest lines are kept in memory, in a bounded heap growing with lines actually read</p>
+ */
+public class TopPostProcessor
+        implements StreamingPostProcessor {
+
+    public static final int DEFAULT_LINES = 10;
+
+    @Override
+    public String getName() {
+        return "top";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Keep greatest lines, comparing numbers by value: top [-k N] [-by COLUMN]";
+    }
+
+    @Override
+    public Stream<String> process(Stream<String> lines, List<String> parameters) throws PostProcessorException {
+        int count = LineProcessors.intParameter(parameters, "-k", DEFAULT_LINES);
+        int column = LineProcessors.intParameter(parameters, "-by", 0);
+        if (count == 0) {
+            return LineProcessors.deferred(lines, s -> Stream.empty());
+        }
+        return LineProcessors.deferred(lines, s -> {
+            // smallest kept line on top of heap, replaced when a greater one comes
+            PriorityQueue<LineProcessors.LineKey> heap = new PriorityQueue<>();
+            s.forEachOrdered(line -> {
+                LineProcessors.LineKey key = LineProcessors.LineKey.of(line, column, true);
+                if (heap.size() < count) {
+                    heap.add(key);
+                } else if (key.compareTo(heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(key);
+                }
+            });
+            List<LineProcessors.LineKey> result = new ArrayList<>(heap);
+            result.sort(Comparator.reverseOrder());
+            return result.stream().map(LineProcessors.LineKey::getLine);
+        });
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.postprocess.StreamingPostProcessor;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Uniq post processor</p>
+ * <p>Like unix command, only adjacent duplicated lines are merged, so that lines are still written as they come</p>
+ */
+public class UniqPostProcessor
+        implements StreamingPostProcessor {
+
+    @Override
+    public String getName() {
+        return "uniq";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Merge adjacent duplicated lines, with -c to prefix lines by occurrences: uniq [-c]";
+    }
+
+    @Override
+    public Stream<String> process(Stream<String> lines, List<String> parameters) {
+        boolean count = LineProcessors.hasFlag(parameters, "-c");
+        Iterator<String> iterator = lines.iterator();
+        Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+
+            private String current;
+
+            private long occurrences;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super String> action) {
+                while (iterator.hasNext()) {
+                    String line = iterator.next();
+                    if (occurrences > 0 && Objects.equals(line, current)) {
+                        occurrences++;
+                        continue;
+                    }
+                    String previous = current;
+                    long previousOccurrences = occurrences;
+                    current = line;
+                    occurrences = 1;
+                    if (previousOccurrences > 0) {
+                        action.accept(format(previous, previousOccurrences));
+                        return true;
+                    }
+                }
+                if (occurrences > 0) {
+                    action.accept(format(current, occurrences));
+                    occurrences = 0;
+                    current = null;
+                    return true;
+                }
+                return false;
+            }
+
+            private String format(String line, long occurrences) {
+                return count ? String.format("%7d %s", occurrences, line) : line;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(lines::close);
+    }
+}
@@ -33,7 +33,6 @@ import java.util.Collections;
 import java.util.Map;
 
 import static com.github.fonimus.ssh.shell.SshHelperTest.*;
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -193,7 +192,7 @@ public abstract class AbstractCommandTest
         when(pl.line()).thenReturn(response);
         when(lr.getParsedLine()).thenReturn(pl);
         SshShellRunnable runnable = mock(SshShellRunnable.class);
-        SSH_THREAD_CONTEXT.set(new SshContext(runnable, t, lr, null));
+        SshContextHolder.set(new SshContext(runnable, t, lr, null));
     }
 
     @Test
@@ -201,6 +200,32 @@ public abstract class AbstractCommandTest
         assertEquals(threaddump.threadDump().getThreads().size(), cmd.threaddump().getThreads().size());
     }
 
+    @Test
+    void testSshExecCommand() {
+        String output = exec(properties, "help", 0);
+        assertTrue(output.contains("AVAILABLE COMMANDS"));
+        assertFalse(output.contains("Please type `help`"));
+        exec(properties, "help | grep version", 0);
+        assertFalse(exec(properties, "unknown-command", 1).isEmpty());
+        exec(properties, "help \"unclosed", 1);
+    }
+
+    @Test
+    void testSshBatch() {
+        String output = batch(properties, Collections.emptyMap(), "help", "unknown-command");
+        assertTrue(output.contains("AVAILABLE COMMANDS"));
+        assertFalse(output.contains("\u001B["));
+        assertFalse(output.contains("Please type `help`"));
+
+        output = batch(properties, Collections.singletonMap("SSH_SHELL_BATCH_FORMAT", "ndjson"),
+                "help", "unknown-command");
+        String[] lines = output.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"command\":\"help\",\"duration\":"));
+        assertTrue(lines[0].contains("\"status\":0"));
+        assertTrue(lines[1].contains("\"status\":1"));
+    }
+
     @Test
     void testSshCallInfoCommand() {
         Map<String, Object> result = info.info();
@@ -94,7 +94,7 @@ public abstract class AbstractTest {
     protected ThreadDumpEndpoint threaddump;
 
     protected void setRole(String role) {
-        SshShellCommandFactory.SSH_THREAD_CONTEXT.set(new SshContext(new SshShellRunnable(properties, null, null,
+        SshContextHolder.set(new SshContext(new SshShellRunnable(properties, null, null,
                 null, null, null, null, null, null, null, null, null, null, null), null, null, new SshAuthentication(
                 "user", "user", null, null, Collections.singletonList(role))));
     }
@@ -105,6 +105,6 @@ public abstract class AbstractTest {
 
     @AfterEach
     protected void afterEach() {
-        SshShellCommandFactory.SSH_THREAD_CONTEXT.remove();
+        SshContextHolder.remove();
     }
 }
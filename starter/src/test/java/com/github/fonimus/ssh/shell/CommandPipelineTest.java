@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandPipelineTest {
+
+    @Test
+    void noPostProcessor() {
+        CommandPipeline pipeline = CommandPipeline.of(() -> "one two three");
+        assertEquals("one two three", pipeline.getRawText());
+        assertEquals(Arrays.asList("one", "two", "three"), pipeline.getWords());
+        assertFalse(pipeline.hasPostProcessors());
+        assertNull(pipeline.getRedirect());
+    }
+
+    @Test
+    void stages() {
+        CommandPipeline pipeline = CommandPipeline.of(() -> "cmd arg | grep -i a b | highlight c > /tmp/file");
+        assertEquals("cmd arg ", pipeline.getRawText());
+        assertEquals(Arrays.asList("cmd", "arg"), pipeline.getWords());
+        List<PostProcessorObject> stages = pipeline.getPostProcessors();
+        assertEquals(3, stages.size());
+        assertEquals("grep", stages.get(0).getName());
+        assertEquals(Arrays.asList("-i", "a", "b"), stages.get(0).getParameters());
+        assertEquals("highlight", stages.get(1).getName());
+        assertEquals(Collections.singletonList("c"), stages.get(1).getParameters());
+        assertEquals("save", stages.get(2).getName());
+        assertEquals(Arrays.asList("-t", "/tmp/file"), stages.get(2).getParameters());
+        assertEquals("/tmp/file", pipeline.getRedirect());
+        assertThrows(UnsupportedOperationException.class, () -> pipeline.getPostProcessors().clear());
+    }
+
+    @Test
+    void append() {
+        CommandPipeline pipeline = CommandPipeline.of(() -> "cmd arg >> /tmp/file");
+        assertEquals("cmd arg ", pipeline.getRawText());
+        assertEquals(Arrays.asList("cmd", "arg"), pipeline.getWords());
+        assertEquals(1, pipeline.getPostProcessors().size());
+        assertEquals("save", pipeline.getPostProcessors().get(0).getName());
+        assertEquals(Collections.singletonList("/tmp/file"), pipeline.getPostProcessors().get(0).getParameters());
+        assertEquals("/tmp/file", pipeline.getRedirect());
+    }
+
+    @Test
+    void danglingKeyChars() {
+        CommandPipeline pipeline = CommandPipeline.compile("cmd | > ", Arrays.asList("cmd", "|", ">"));
+        assertEquals(Collections.singletonList("cmd"), pipeline.getWords());
+        assertFalse(pipeline.hasPostProcessors());
+    }
+
+    @Test
+    void cache() {
+        CommandPipeline.clearCache();
+        CommandPipeline first = CommandPipeline.of(() -> "cmd | grep a");
+        assertSame(first, CommandPipeline.of(() -> "cmd | grep a"));
+        assertEquals(1, CommandPipeline.cacheSize());
+        // plan of extended input is reused
+        assertSame(first, CommandPipeline.of(new ExtendedInput(first)));
+        for (int i = 0; i < CommandPipeline.CACHE_SIZE + 10; i++) {
+            String line = "cmd " + i;
+            CommandPipeline.of(() -> line);
+        }
+        assertEquals(CommandPipeline.CACHE_SIZE, CommandPipeline.cacheSize());
+        assertNotSame(first, CommandPipeline.of(() -> "cmd | grep a"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.shell.CompletionProposal;
+import org.springframework.shell.command.CommandOption;
+import org.springframework.shell.command.CommandRegistration;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionCatalogTest {
+
+    private static CommandRegistration registration(String command, boolean hidden) {
+        CommandRegistration.Builder builder = CommandRegistration.builder().command(command)
+                .withTarget().function(ctx -> "result").and()
+                .withOption().longNames("long").shortNames('l').and()
+                .withOption().shortNames('s').and();
+        if (hidden) {
+            builder.hidden();
+        }
+        return builder.build();
+    }
+
+    private static CompletionCatalog catalog() {
+        Map<String, CommandRegistration> map = new HashMap<>();
+        for (String command : Arrays.asList("jmx-info", "jmx-list", "group", "group sub", "other")) {
+            map.put(command, registration(command, false));
+        }
+        map.put("jmx-hidden", registration("jmx-hidden", true));
+        return CompletionCatalog.of(map);
+    }
+
+    private static List<String> values(List<CompletionProposal> proposals) {
+        return proposals.stream().map(CompletionProposal::value).collect(Collectors.toList());
+    }
+
+    @Test
+    void commandsStartingWith() {
+        CompletionCatalog catalog = catalog();
+        assertEquals(6, catalog.size());
+        assertEquals(Arrays.asList("group", "group sub", "jmx-info", "jmx-list", "other"),
+                values(catalog.commandsStartingWith("")));
+        assertEquals(Arrays.asList("jmx-info", "jmx-list"), values(catalog.commandsStartingWith("jmx")));
+        // only words after the ones already typed
+        assertEquals(Collections.singletonList("sub"), values(catalog.commandsStartingWith("group s")));
+        assertEquals(Collections.emptyList(), values(catalog.commandsStartingWith("unknown")));
+        assertEquals(CompletionCatalog.COMMANDS_CATEGORY, catalog.commandsStartingWith("other").get(0).category());
+    }
+
+    @Test
+    void isUpToDate() {
+        Map<String, CommandRegistration> map = new HashMap<>();
+        map.put("jmx-info", registration("jmx-info", false));
+        CompletionCatalog catalog = CompletionCatalog.of(map);
+        assertTrue(catalog.isUpToDate(new HashMap<>(map)));
+        // same name, other registration
+        assertFalse(catalog.isUpToDate(Collections.singletonMap("jmx-info", registration("jmx-info", false))));
+        map.put("jmx-list", registration("jmx-list", false));
+        assertFalse(catalog.isUpToDate(map));
+        assertFalse(catalog.isUpToDate(Collections.emptyMap()));
+    }
+
+    @Test
+    void longestCommand() {
+        CompletionCatalog catalog = catalog();
+        assertEquals("group", catalog.longestCommand("group"));
+        assertEquals("group", catalog.longestCommand("group --long "));
+        assertEquals("group sub", catalog.longestCommand("group sub -s"));
+        assertEquals("jmx-hidden", catalog.longestCommand("jmx-hidden "));
+        assertNull(catalog.longestCommand("jmx"));
+        assertNull(catalog.longestCommand(""));
+    }
+
+    @Test
+    void matchOptions() {
+        CompletionCatalog catalog = catalog();
+        CommandOption longOption = catalog.registration("other").getOptions().get(0);
+        CommandOption shortOption = catalog.registration("other").getOptions().get(1);
+        assertEquals(Collections.singletonList(longOption), catalog.matchOptions("other", "--long"));
+        assertEquals(Collections.singletonList(longOption), catalog.matchOptions("other", "-l"));
+        assertEquals(Arrays.asList(shortOption, longOption), catalog.matchOptions("other", "-sl"));
+        assertEquals(Collections.emptyList(), catalog.matchOptions("other", "--unknown"));
+        assertEquals(Collections.emptyList(), catalog.matchOptions("other", "long"));
+        assertEquals(Collections.emptyList(), catalog.matchOptions("unknown", "--long"));
+    }
+}
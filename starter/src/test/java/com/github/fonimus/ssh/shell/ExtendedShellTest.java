@@ -16,7 +16,9 @@
 
 package com.github.fonimus.ssh.shell;
 
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorException;
 import com.github.fonimus.ssh.shell.postprocess.PostProcessorObject;
+import com.github.fonimus.ssh.shell.postprocess.PostProcessorRegistry;
 import com.github.fonimus.ssh.shell.postprocess.provided.GrepPostProcessor;
 import com.github.fonimus.ssh.shell.postprocess.provided.SavePostProcessor;
 import lombok.SneakyThrows;
@@ -39,7 +41,6 @@ import org.springframework.shell.jline.ExtendedDefaultParser;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -51,7 +52,7 @@ class ExtendedShellTest {
 
     @BeforeEach
     void setUp() {
-        SSH_THREAD_CONTEXT.set(new SshContext(null, null, null, null));
+        SshContextHolder.set(new SshContext(null, null, null, null));
         resultHandlerService = mock(ResultHandlerService.class);
         CommandCatalog commandRegistry = mock(CommandCatalog.class);
         Map<String, CommandRegistration> map = new HashMap<>();
@@ -65,7 +66,7 @@ class ExtendedShellTest {
         }).and().build());
         when(commandRegistry.getRegistrations()).thenReturn(map);
         shell = new ExtendedShell(resultHandlerService, commandRegistry, null, null, null,
-                Collections.singletonList(new GrepPostProcessor()));
+                new PostProcessorRegistry(Collections.singletonList(new GrepPostProcessor())));
         shell.setCompletionResolvers(Collections.singletonList(new RegistrationOptionsCompletionResolver()));
     }
 
@@ -95,16 +96,44 @@ class ExtendedShellTest {
     @Test
     void evaluate() {
         shell.evaluate(() -> "one two three");
-        assertEquals(Collections.emptyList(), SSH_THREAD_CONTEXT.get().getPostProcessorsList());
+        assertEquals(Collections.emptyList(), SshContextHolder.get().getPostProcessorsList());
 
         shell.evaluate(() -> "one two three | grep test > /tmp/file");
-        List<PostProcessorObject> postProcessors = SSH_THREAD_CONTEXT.get().getPostProcessorsList();
+        List<PostProcessorObject> postProcessors = SshContextHolder.get().getPostProcessorsList();
         assertNotNull(postProcessors);
         assertEquals(2, postProcessors.size());
         assertInList(postProcessors, new GrepPostProcessor().getName());
         assertInList(postProcessors, new SavePostProcessor().getName());
     }
 
+    @Test
+    void evaluateInvalidPostProcessors() {
+        Object result = shell.evaluate(() -> "cmd | grpe test");
+        assertEquals(PostProcessorException.class, result.getClass());
+        assertEquals("Unknown post processor [grpe]", ((PostProcessorException) result).getMessage());
+        assertEquals(Collections.emptyList(), SshContextHolder.get().getPostProcessorsList());
+    }
+
+    @Test
+    void completeCommandRegisteredAfterStartup() {
+        CommandCatalog commandRegistry = mock(CommandCatalog.class);
+        Map<String, CommandRegistration> map = new HashMap<>();
+        map.put("cmd", CommandRegistration.builder().command("cmd").withTarget().function(ctx -> "result").and().build());
+        // command catalog returns a new map on each call
+        when(commandRegistry.getRegistrations()).thenAnswer(invocation -> new HashMap<>(map));
+        ExtendedShell extendedShell = new ExtendedShell(resultHandlerService, commandRegistry, null, null, null,
+                new PostProcessorRegistry(Collections.emptyList()));
+        extendedShell.afterSingletonsInstantiated();
+        CompletionContext context = new CompletionContext(Collections.singletonList("cm"), 0, 2, null, null);
+        assertEquals(Collections.singletonList("cmd"), extendedShell.complete(context).stream()
+                .map(CompletionProposal::value).collect(Collectors.toList()));
+
+        map.put("cmd-late", CommandRegistration.builder().command("cmd-late").withTarget().function(ctx -> "late")
+                .and().build());
+        assertEquals(Arrays.asList("cmd", "cmd-late"), extendedShell.complete(context).stream()
+                .map(CompletionProposal::value).collect(Collectors.toList()));
+    }
+
     private void assertInList(List<PostProcessorObject> postProcessors, String name) {
         for (PostProcessorObject postProcessor : postProcessors) {
             if (postProcessor.getName().equals(name)) {
@@ -143,7 +172,13 @@ class ExtendedShellTest {
                 // propose only not used options
                 Arguments.of("cmd --ac cp1 ", Collections.singletonList("--ab")),
                 // after pipe, complete with post processors
-                Arguments.of("cmd --ac cp1 --ab test | ", Collections.singletonList("grep"))
+                Arguments.of("cmd --ac cp1 --ab test | ", Collections.singletonList("grep")),
+                Arguments.of("cmd | gr", Collections.singletonList("grep")),
+                Arguments.of("cmd | x", Collections.emptyList()),
+                // post processor parameters and redirection target
+                Arguments.of("cmd | grep ", Collections.emptyList()),
+                Arguments.of("cmd | grep test | ", Collections.singletonList("grep")),
+                Arguments.of("cmd > ", Collections.emptyList())
         );
     }
 
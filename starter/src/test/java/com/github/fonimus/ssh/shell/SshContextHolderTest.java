@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SshContextHolderTest {
+
+    @AfterEach
+    void tearDown() {
+        SshContextHolder.remove();
+    }
+
+    @Test
+    void call() throws Exception {
+        assertNull(SshContextHolder.get());
+        SshContext outer = new SshContext();
+        SshContext inner = new SshContext();
+        SshContextHolder.set(outer);
+        assertEquals("ok", SshContextHolder.call(inner, () -> {
+            assertSame(inner, SshContextHolder.get());
+            return "ok";
+        }));
+        // previous context restored
+        assertSame(outer, SshContextHolder.get());
+        assertThrows(IllegalArgumentException.class, () -> SshContextHolder.call(inner, () -> {
+            throw new IllegalArgumentException("failure");
+        }));
+        assertSame(outer, SshContextHolder.get());
+    }
+
+    @Test
+    void childThread() throws Exception {
+        SshContext ctx = new SshContext();
+        AtomicReference<SshContext> found = new AtomicReference<>(ctx);
+        SshContextHolder.call(ctx, () -> {
+            Thread thread = new Thread(() -> found.set(SshContextHolder.get()));
+            thread.start();
+            thread.join(5000);
+            return null;
+        });
+        // not inherited, thread could be pooled and outlive session
+        assertNull(found.get());
+    }
+
+    @Test
+    void wrap() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // pooled thread created without context
+            executor.submit(() -> {
+            }).get(5, TimeUnit.SECONDS);
+            SshContext ctx = new SshContext();
+            AtomicReference<SshContext> found = new AtomicReference<>();
+            SshContextHolder.call(ctx, () -> executor.submit(SshContextHolder.wrap(() -> found.set(SshContextHolder.get())))
+                    .get(5, TimeUnit.SECONDS));
+            assertSame(ctx, found.get());
+            // context is not left on pooled thread
+            assertNull(executor.submit(SshContextHolder::get).get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
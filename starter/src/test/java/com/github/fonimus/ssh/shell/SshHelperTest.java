@@ -17,6 +17,8 @@
 package com.github.fonimus.ssh.shell;
 
 import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelShell;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
@@ -26,9 +28,11 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class SshHelperTest {
@@ -70,6 +74,61 @@ public class SshHelperTest {
         }
     }
 
+    public static String exec(SshShellProperties properties, String command, int expectedExitStatus) {
+        try {
+            JSch jsch = new JSch();
+            Session session = jsch.getSession(properties.getUser(), properties.getHost(), properties.getPort());
+            session.setPassword(properties.getPassword());
+            Properties config = new Properties();
+            config.put("StrictHostKeyChecking", "no");
+            session.setConfig(config);
+            session.connect();
+            ChannelExec channel = (ChannelExec) session.openChannel("exec");
+            channel.setCommand(command);
+            try (InputStream is = channel.getInputStream()) {
+                channel.connect();
+                String output = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                await().atMost(Duration.ofSeconds(5)).until(channel::isClosed);
+                LOGGER.info("[{}] exit status: {}, output: {}", command, channel.getExitStatus(), output);
+                assertEquals(expectedExitStatus, channel.getExitStatus());
+                return output;
+            } finally {
+                channel.disconnect();
+                session.disconnect();
+            }
+        } catch (JSchException | IOException ex) {
+            return fail(ex.toString());
+        }
+    }
+
+    public static String batch(SshShellProperties properties, Map<String, String> env, String... commands) {
+        try {
+            JSch jsch = new JSch();
+            Session session = jsch.getSession(properties.getUser(), properties.getHost(), properties.getPort());
+            session.setPassword(properties.getPassword());
+            Properties config = new Properties();
+            config.put("StrictHostKeyChecking", "no");
+            session.setConfig(config);
+            session.connect();
+            ChannelShell channel = (ChannelShell) session.openChannel("shell");
+            channel.setPty(false);
+            env.forEach(channel::setEnv);
+            channel.setInputStream(new ByteArrayInputStream(
+                    (String.join("\n", commands) + "\n").getBytes(StandardCharsets.UTF_8)));
+            try (InputStream is = channel.getInputStream()) {
+                channel.connect();
+                String output = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                LOGGER.info("batch exit status: {}, output: {}", channel.getExitStatus(), output);
+                return output;
+            } finally {
+                channel.disconnect();
+                session.disconnect();
+            }
+        } catch (JSchException | IOException ex) {
+            return fail(ex.toString());
+        }
+    }
+
     public static void verifyResponse(InputStream pis, String response) {
         StringBuilder sb = new StringBuilder();
         try {
@@ -29,6 +29,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ApplicationContext;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.util.Collections;
+
+import static com.github.fonimus.ssh.shell.SshHelperTest.batch;
+import static com.github.fonimus.ssh.shell.SshHelperTest.exec;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
@@ -96,4 +100,16 @@ public class SshShellApplicationTest
         assertThrows(IllegalArgumentException.class, () -> tasks.tasksRestart(false, "unknown"));
         assertThrows(IllegalArgumentException.class, () -> tasks.tasksSingle(false, "unknown"));
     }
+
+    @Test
+    void testConfirmWithoutInteractiveInput() {
+        String taskName = TaskServiceTest.class.getName() + ".test";
+        // confirmation cannot be read, task is not stopped
+        assertTrue(exec(properties, "tasks-stop --task " + taskName, 1)
+                .contains("Interactive input not available in exec mode"));
+        String output = batch(properties, Collections.emptyMap(), "tasks-stop --task " + taskName, "help");
+        assertTrue(output.contains("Interactive input not available in batch mode"));
+        assertTrue(output.contains("AVAILABLE COMMANDS"));
+        assertTrue(tasks.tasksList(null, true).contains(taskName));
+    }
 }
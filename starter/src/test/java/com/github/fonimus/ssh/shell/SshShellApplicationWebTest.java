@@ -19,11 +19,14 @@ package com.github.fonimus.ssh.shell;
 import com.github.fonimus.ssh.shell.commands.ManageSessionsCommand;
 import com.github.fonimus.ssh.shell.conf.SshShellSessionConfigurationTest;
 import com.github.fonimus.ssh.shell.manage.SshShellSessionManager;
+import org.apache.sshd.server.channel.ChannelSession;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.util.Map;
+
 import static com.github.fonimus.ssh.shell.SshHelperTest.call;
 import static com.github.fonimus.ssh.shell.SshHelperTest.write;
 import static org.junit.jupiter.api.Assertions.*;
@@ -86,10 +89,18 @@ public class SshShellApplicationWebTest
             setCtx("");
             assertNotNull(manageSessionsCommand.manageSessionsList());
             Long oneId = sshShellSessionManager.listSessions().keySet().iterator().next();
+            assertEquals(sshShellSessionManager.listSessions(), deprecatedListSessions());
             assertTrue(manageSessionsCommand.manageSessionsInfo(0L).contains("not found"));
             assertTrue(manageSessionsCommand.manageSessionsInfo(oneId).contains("/127.0.0.1"));
+            assertTrue(manageSessionsCommand.manageSessionsSpill(0L, 0, 100).contains("not found"));
+            assertTrue(manageSessionsCommand.manageSessionsSpill(oneId, 0, 100).contains("No output spilled"));
             assertTrue(manageSessionsCommand.manageSessionsStop(0L).contains("Unable to stop session"));
             assertTrue(manageSessionsCommand.manageSessionsStop(oneId).contains("stopped"));
         });
     }
+
+    @SuppressWarnings("deprecation")
+    private Map<Long, ChannelSession> deprecatedListSessions() {
+        return context.getBean(SshShellCommandFactory.class).listSessions();
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.shell.CompletionContext;
+import org.springframework.shell.CompletionProposal;
+import org.springframework.shell.command.CommandOption;
+import org.springframework.shell.command.CommandRegistration;
+import org.springframework.shell.completion.CompletionResolver;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SshShellCompletionCacheTest {
+
+    private ExecutorService executor;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        SshContextHolder.remove();
+    }
+
+    private SshShellCompletionCache cache(Duration timeout, Duration ttl) {
+        SshShellProperties.Completion completion = new SshShellProperties.Completion();
+        completion.setTimeout(timeout);
+        completion.setCacheTtl(ttl);
+        return new SshShellCompletionCache(completion, executor);
+    }
+
+    private static CommandOption option(CompletionResolver completion) {
+        return CommandRegistration.builder().command("cmd")
+                .withTarget().function(ctx -> "result").and()
+                .withOption().longNames("opt").completion(completion).and()
+                .build().getOptions().get(0);
+    }
+
+    private static CompletionContext context(String word) {
+        return new CompletionContext(Arrays.asList("--opt", word), 1, word.length(), null, null);
+    }
+
+    private List<CompletionProposal> counted(CompletionContext ctx) {
+        calls.incrementAndGet();
+        return Collections.singletonList(new CompletionProposal("value-" + ctx.currentWordUpToCursor()));
+    }
+
+    @Test
+    void cached() {
+        SshShellCompletionCache cache = cache(Duration.ofSeconds(5), Duration.ofMinutes(1));
+        CommandOption option = option(this::counted);
+
+        assertEquals("value-a", cache.complete("cmd", option, context("a")).get(0).value());
+        assertEquals("value-a", cache.complete("cmd", option, context("a")).get(0).value());
+        assertEquals(1, calls.get());
+
+        // other prefix
+        assertEquals("value-ab", cache.complete("cmd", option, context("ab")).get(0).value());
+        assertEquals(2, calls.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void slowProvider() {
+        SshShellCompletionCache cache = cache(Duration.ofMillis(50), Duration.ofMinutes(1));
+        CountDownLatch release = new CountDownLatch(1);
+        CommandOption option = option(ctx -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return counted(ctx);
+        });
+
+        long start = System.nanoTime();
+        assertEquals(Collections.emptyList(), cache.complete("cmd", option, context("a")));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+        // still running: not called again
+        assertEquals(Collections.emptyList(), cache.complete("cmd", option, context("a")));
+
+        release.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> !cache.complete("cmd", option, context("a")).isEmpty());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failingProvider() {
+        SshShellCompletionCache cache = cache(Duration.ofSeconds(5), Duration.ofMinutes(1));
+        CommandOption option = option(ctx -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("test");
+        });
+
+        assertEquals(Collections.emptyList(), cache.complete("cmd", option, context("a")));
+        assertEquals(0, cache.size());
+        // failures are not cached
+        cache.complete("cmd", option, context("a"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void disabled() {
+        SshShellCompletionCache cache = cache(Duration.ZERO, Duration.ZERO);
+        CommandOption option = option(this::counted);
+
+        assertEquals("value-a", cache.complete("cmd", option, context("a")).get(0).value());
+        assertEquals("value-a", cache.complete("cmd", option, context("a")).get(0).value());
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void perSession() {
+        SshShellCompletionCache cache = cache(Duration.ofSeconds(5), Duration.ofMinutes(1));
+        CommandOption option = option(this::counted);
+        SshContext first = new SshContext();
+        SshContextHolder.set(first);
+        cache.complete("cmd", option, context("a"));
+        SshContextHolder.set(new SshContext());
+        cache.complete("cmd", option, context("a"));
+        assertEquals(2, calls.get());
+        assertEquals(2, cache.size());
+
+        // entries of a session are removed when it ends
+        first.close();
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.apache.sshd.common.NamedResource;
+import org.apache.sshd.common.cipher.BuiltinCiphers;
+import org.apache.sshd.common.compression.BuiltinCompressions;
+import org.apache.sshd.common.io.nio2.Nio2ServiceFactoryFactory;
+import org.apache.sshd.common.mac.BuiltinMacs;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.server.SshServer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SshShellConfigurationTest {
+
+    private static List<String> names(List<? extends NamedResource> resources) {
+        return resources.stream().map(NamedResource::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    void testDefaultServer() {
+        SshServer server = SshServer.setUpDefaultServer();
+        SshShellConfiguration.configureServer(server, new SshShellProperties.Server());
+        assertFalse(server.getProperties().containsKey(CoreModuleProperties.NIO_WORKERS.getName()));
+        assertFalse(server.getProperties().containsKey(CoreModuleProperties.TCP_NODELAY.getName()));
+    }
+
+    @Test
+    void testTunedServer() {
+        SshShellProperties.Server properties = new SshShellProperties.Server();
+        properties.setIoBackend(SshShellProperties.IoBackend.nio2);
+        properties.setNioWorkers(4);
+        properties.setWindowSize(4L * 1024 * 1024);
+        properties.setMaxPacketSize(64L * 1024);
+        properties.setNio2ReadBufferSize(64 * 1024);
+        properties.setTcpNoDelay(true);
+        properties.setKeepAlive(true);
+        properties.setBacklog(100);
+        SshServer server = SshServer.setUpDefaultServer();
+        SshShellConfiguration.configureServer(server, properties);
+
+        assertInstanceOf(Nio2ServiceFactoryFactory.class, server.getIoServiceFactoryFactory());
+        assertEquals(4, CoreModuleProperties.NIO_WORKERS.getRequired(server));
+        assertEquals(4L * 1024 * 1024, CoreModuleProperties.WINDOW_SIZE.getRequired(server));
+        assertEquals(64L * 1024, CoreModuleProperties.MAX_PACKET_SIZE.getRequired(server));
+        assertEquals(64 * 1024, CoreModuleProperties.NIO2_READ_BUFFER_SIZE.getRequired(server));
+        assertTrue(CoreModuleProperties.TCP_NODELAY.getRequired(server));
+        assertTrue(CoreModuleProperties.SOCKET_KEEPALIVE.getRequired(server));
+        assertEquals(100, CoreModuleProperties.SOCKET_BACKLOG.getRequired(server));
+    }
+
+    @Test
+    void testAlgorithmsProfiles() {
+        SshServer defaults = SshServer.setUpDefaultServer();
+        List<String> defaultCiphers = names(defaults.getCipherFactories());
+        SshShellAlgorithms.apply(defaults, SshShellProperties.AlgorithmsProfile.defaults, false);
+        assertEquals(defaultCiphers, names(defaults.getCipherFactories()));
+
+        SshServer throughput = SshServer.setUpDefaultServer();
+        SshShellAlgorithms.apply(throughput, SshShellProperties.AlgorithmsProfile.throughput, false);
+        assertEquals(BuiltinCiphers.aes128gcm.getName(), throughput.getCipherFactories().get(0).getName());
+        assertEquals(BuiltinCompressions.delayedZlib.getName(), throughput.getCompressionFactories().get(0).getName());
+
+        SshServer lowCpu = SshServer.setUpDefaultServer();
+        SshShellAlgorithms.apply(lowCpu, SshShellProperties.AlgorithmsProfile.low_cpu, false);
+        assertEquals(List.of(BuiltinCompressions.none.getName()), names(lowCpu.getCompressionFactories()));
+
+        SshServer compat = SshServer.setUpDefaultServer();
+        SshShellAlgorithms.apply(compat, SshShellProperties.AlgorithmsProfile.compat, false);
+        assertTrue(names(compat.getCipherFactories()).contains(BuiltinCiphers.aes128cbc.getName()));
+        assertFalse(names(compat.getMacFactories()).contains(BuiltinMacs.hmacsha1.getName()));
+        assertFalse(names(compat.getKeyExchangeFactories()).contains("diffie-hellman-group14-sha1"));
+        assertFalse(names(compat.getKeyExchangeFactories()).contains("diffie-hellman-group1-sha1"));
+
+        SshServer compatSha1 = SshServer.setUpDefaultServer();
+        SshShellAlgorithms.apply(compatSha1, SshShellProperties.AlgorithmsProfile.compat, true);
+        assertTrue(names(compatSha1.getMacFactories()).contains(BuiltinMacs.hmacsha1.getName()));
+        assertTrue(names(compatSha1.getKeyExchangeFactories()).contains("diffie-hellman-group14-sha1"));
+        assertTrue(names(compatSha1.getKeyExchangeFactories()).contains("diffie-hellman-group-exchange-sha1"));
+        assertFalse(names(compatSha1.getKeyExchangeFactories()).contains("diffie-hellman-group1-sha1"));
+    }
+
+    @Test
+    void testMissingIoBackend() {
+        SshShellProperties.Server properties = new SshShellProperties.Server();
+        properties.setIoBackend(SshShellProperties.IoBackend.netty);
+        SshServer server = SshServer.setUpDefaultServer();
+        assertThrows(IllegalStateException.class, () -> SshShellConfiguration.configureServer(server, properties));
+    }
+}
@@ -53,6 +53,18 @@ class SshShellHelperTest extends AbstractShellHelperTest {
         assertFalse(h.confirm(MESSAGE, true, "OUI"));
     }
 
+    @Test
+    void confirmWithoutLineReader() {
+        SshContext ctx = new SshContext(mock(SshShellRunnable.class), ter, null, null);
+        SshContextHolder.set(ctx);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> h.confirm(MESSAGE));
+        assertEquals("Interactive input not available in exec mode", e.getMessage());
+        assertThrows(IllegalStateException.class, () -> h.getHistory());
+        ctx.setBatch(true);
+        e = assertThrows(IllegalStateException.class, () -> h.read());
+        assertEquals("Interactive input not available in batch mode", e.getMessage());
+    }
+
     private void setAnswer(String answer) {
         when(lr.getParsedLine()).thenReturn(new ArgumentCompleter.ArgumentLine(answer, 0));
     }
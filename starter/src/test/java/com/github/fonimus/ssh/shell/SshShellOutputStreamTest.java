@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SshShellOutputStreamTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private static SshShellProperties.Sessions.Output output(int bufferSize, Duration flushDelay) {
+        SshShellProperties.Sessions.Output output = new SshShellProperties.Sessions.Output();
+        output.setBufferSize(bufferSize);
+        output.setFlushDelay(flushDelay);
+        return output;
+    }
+
+    private static SshShellOutputStream stream(OutputStream channel, LongSupplier window, int bufferSize,
+                                               Duration flushDelay, ScheduledExecutorService scheduler) {
+        return new SshShellOutputStream(channel, window, output(bufferSize, flushDelay), scheduler);
+    }
+
+    @Test
+    void coalesce() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        SshShellOutputStream os = stream(channel, null, 1024, Duration.ofMinutes(1), scheduler);
+        for (int i = 0; i < 100; i++) {
+            os.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            os.flush();
+        }
+        // flushes are deferred, nothing sent yet
+        assertEquals(0, channel.size());
+        assertEquals(0, channel.flushes);
+
+        os.forceFlush();
+        assertTrue(channel.toString(StandardCharsets.UTF_8).startsWith("line 0\nline 1\n"));
+        assertEquals(1, channel.flushes);
+        assertEquals(channel.size(), os.getWrittenBytes());
+        assertEquals(1, os.getFlushCount());
+    }
+
+    @Test
+    void deferredFlush() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        SshShellOutputStream os = stream(channel, null, 1024, Duration.ofMillis(20), scheduler);
+        os.write("prompt>".getBytes(StandardCharsets.UTF_8));
+        os.flush();
+        os.flush();
+        await().atMost(Duration.ofSeconds(5)).until(() -> channel.flushes == 1);
+        assertEquals("prompt>", channel.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void bufferFull() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        SshShellOutputStream os = stream(channel, null, 8, Duration.ZERO, null);
+        os.write("1234".getBytes(StandardCharsets.UTF_8));
+        os.write("5678".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, channel.size());
+        os.write('9');
+        assertEquals("12345678", channel.toString(StandardCharsets.UTF_8));
+        // large write is not copied in buffer
+        os.write("abcdefghijkl".getBytes(StandardCharsets.UTF_8));
+        assertEquals("123456789abcdefghijkl", channel.toString(StandardCharsets.UTF_8));
+        // no delay: flushed directly
+        os.write('!');
+        os.flush();
+        assertEquals(1, channel.flushes);
+
+        os.close();
+        assertThrows(IOException.class, () -> os.write('?'));
+    }
+
+    @Test
+    void slowClientKeepsPendingBytes() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        AtomicLong window = new AtomicLong(4);
+        SshShellOutputStream os = stream(channel, window::get, 8, Duration.ZERO, scheduler);
+        os.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        // only what fits in client window is sent, session thread is not blocked
+        assertEquals("0123", channel.toString(StandardCharsets.UTF_8));
+        assertEquals(6, os.getOutstandingBytes());
+
+        window.set(Long.MAX_VALUE);
+        // retried by scheduler once client window is open again
+        await().atMost(Duration.ofSeconds(5)).until(() -> os.getOutstandingBytes() == 0);
+        assertEquals("0123456789", channel.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void truncate() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        SshShellProperties.Sessions.Output properties = output(4, Duration.ZERO);
+        properties.setMaxPending(6);
+        properties.setOverflowPolicy(SshShellProperties.OverflowPolicy.truncate);
+        AtomicLong window = new AtomicLong(0);
+        SshShellOutputStream os = new SshShellOutputStream(channel, window::get, properties, null);
+        os.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        assertEquals(4, os.getDroppedBytes());
+        os.write("abc".getBytes(StandardCharsets.UTF_8));
+
+        window.set(Long.MAX_VALUE);
+        os.forceFlush();
+        // marker is written where output has been cut, then output is sent again
+        assertEquals("012345\r\n[client too slow, 4 bytes of output dropped]\r\nabc",
+                channel.toString(StandardCharsets.UTF_8));
+        assertEquals(4, os.getDroppedBytes());
+        assertEquals(0, os.getOutstandingBytes());
+    }
+
+    @Test
+    void spill() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        SshShellProperties.Sessions.Output properties = output(4, Duration.ZERO);
+        properties.setMaxPending(6);
+        properties.setOverflowPolicy(SshShellProperties.OverflowPolicy.spill);
+        AtomicLong window = new AtomicLong(0);
+        SshShellOutputStream os = new SshShellOutputStream(channel, window::get, properties, null);
+        os.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        os.write("abc".getBytes(StandardCharsets.UTF_8));
+
+        window.set(Long.MAX_VALUE);
+        os.forceFlush();
+        Path spillFile = os.getSpillFile();
+        assertNotNull(spillFile);
+        try {
+            assertEquals("012345\r\n[client too slow, 4 bytes of output saved to " + spillFile + " at offset 0]\r\nabc",
+                    channel.toString(StandardCharsets.UTF_8));
+            assertEquals("6789", Files.readString(spillFile));
+            assertEquals(0, os.getDroppedBytes());
+
+            // second overflow appends to same file
+            window.set(0);
+            os.write("ABCDEFGHIJ".getBytes(StandardCharsets.UTF_8));
+            assertEquals("GHIJ", new String(os.readSpilled(4, 100), StandardCharsets.UTF_8));
+            window.set(Long.MAX_VALUE);
+            os.forceFlush();
+            assertSame(spillFile, os.getSpillFile());
+            assertTrue(channel.toString(StandardCharsets.UTF_8).endsWith("ABCDEF\r\n[client too slow, 4 bytes of output saved to "
+                    + spillFile + " at offset 4]\r\n"));
+            assertEquals(8, os.getSpilledBytes());
+            assertEquals("6789GHIJ", new String(os.readSpilled(0, 100), StandardCharsets.UTF_8));
+            assertEquals("89G", new String(os.readSpilled(2, 3), StandardCharsets.UTF_8));
+            assertEquals(0, os.readSpilled(8, 100).length);
+
+            os.release();
+            assertFalse(Files.exists(spillFile));
+        } finally {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    @Test
+    void spillRetention() throws IOException {
+        SshShellProperties.Sessions.Output properties = output(4, Duration.ZERO);
+        properties.setMaxPending(2);
+        properties.setOverflowPolicy(SshShellProperties.OverflowPolicy.spill);
+        properties.setSpillRetention(Duration.ofMillis(200));
+        SshShellOutputStream os = new SshShellOutputStream(new FlushCountingStream(), () -> 0, properties, scheduler);
+        os.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        Path spillFile = os.getSpillFile();
+        assertNotNull(spillFile);
+        try {
+            os.release();
+            // still readable during retention
+            assertEquals("23456789", new String(os.readSpilled(0, 100), StandardCharsets.UTF_8));
+            await().atMost(Duration.ofSeconds(5)).until(() -> !Files.exists(spillFile));
+        } finally {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    @Test
+    void blockWithTimeout() throws IOException {
+        FlushCountingStream channel = new FlushCountingStream();
+        SshShellProperties.Sessions.Output properties = output(4, Duration.ZERO);
+        properties.setMaxPending(6);
+        properties.setBlockTimeout(Duration.ofMillis(50));
+        AtomicLong window = new AtomicLong(0);
+        SshShellOutputStream os = new SshShellOutputStream(channel, window::get, properties, null);
+        os.write("012345".getBytes(StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        os.write("6789".getBytes(StandardCharsets.UTF_8));
+        // blocked until timeout, then truncated
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        assertEquals(4, os.getDroppedBytes());
+
+        // client reads while session is blocked
+        window.set(Long.MAX_VALUE);
+        os.forceFlush();
+        os.write("abcdefgh".getBytes(StandardCharsets.UTF_8));
+        assertTrue(channel.toString(StandardCharsets.UTF_8).endsWith("abcdefgh"));
+        assertTrue(os.awaitSent(Duration.ofSeconds(1)));
+    }
+
+    private static class FlushCountingStream extends ByteArrayOutputStream {
+
+        private volatile int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SshShellSessionExecutorTest {
+
+    private static SshShellSessionExecutor executor(SshShellProperties.SessionExecutorType type, int max) {
+        SshShellProperties properties = new SshShellProperties();
+        properties.getSessions().setExecutor(type);
+        properties.getSessions().setMaxPlatformThreads(max);
+        return new SshShellSessionExecutor(properties);
+    }
+
+    @Test
+    void platform() throws Exception {
+        SshShellSessionExecutor executor = executor(SshShellProperties.SessionExecutorType.platform, 1);
+        try {
+            assertFalse(executor.isVirtual());
+            CountDownLatch release = new CountDownLatch(1);
+            String[] name = new String[1];
+            Future<?> first = executor.submit(() -> {
+                name[0] = Thread.currentThread().getName();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            // only one platform thread allowed
+            assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> {
+            }));
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            assertTrue(name[0].startsWith(SshShellSessionExecutor.THREAD_PREFIX));
+            // thread is reused once idle
+            await().atMost(Duration.ofSeconds(5)).until(() -> {
+                try {
+                    executor.submit(() -> {
+                    });
+                    return true;
+                } catch (RejectedExecutionException e) {
+                    return false;
+                }
+            });
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void auto() {
+        assertFalse(SshShellSessionExecutor.useVirtualThreads(SshShellProperties.SessionExecutorType.auto, 17));
+        assertFalse(SshShellSessionExecutor.useVirtualThreads(SshShellProperties.SessionExecutorType.auto, 21));
+        assertTrue(SshShellSessionExecutor.useVirtualThreads(SshShellProperties.SessionExecutorType.auto, 24));
+        assertTrue(SshShellSessionExecutor.useVirtualThreads(SshShellProperties.SessionExecutorType.virtual, 21));
+        assertFalse(SshShellSessionExecutor.useVirtualThreads(SshShellProperties.SessionExecutorType.platform, 25));
+        SshShellSessionExecutor executor = executor(SshShellProperties.SessionExecutorType.auto, 1);
+        try {
+            assertEquals(Runtime.version().feature() >= 24, executor.isVirtual());
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void virtual() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need jdk 21+");
+        SshShellSessionExecutor executor = executor(SshShellProperties.SessionExecutorType.virtual, 1);
+        try {
+            assertTrue(executor.isVirtual());
+            SshContext ctx = new SshContext();
+            Object[] found = new Object[1];
+            executor.submit(() -> {
+                SshContextHolder.set(ctx);
+                found[0] = SshContextHolder.get();
+            }).get(5, TimeUnit.SECONDS);
+            assertSame(ctx, found[0]);
+            // no bound with virtual threads
+            executor.submit(() -> {
+            }).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.destroy();
+        }
+    }
+}
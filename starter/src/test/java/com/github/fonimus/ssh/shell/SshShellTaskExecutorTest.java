@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell;
+
+import com.github.fonimus.ssh.shell.manage.SshShellSession;
+import com.github.fonimus.ssh.shell.manage.SshShellSessionRegistry;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SshShellTaskExecutorTest {
+
+    private SshShellSessionRegistry registry;
+
+    private SshShellTaskExecutor executor;
+
+    private ChannelSession channel;
+
+    private SshContext ctx;
+
+    @BeforeEach
+    void setUp() {
+        // context may have been left on this thread by previous tests
+        SshContextHolder.remove();
+        registry = new SshShellSessionRegistry();
+        executor = new SshShellTaskExecutor(new SshShellProperties(), registry);
+        channel = mock(ChannelSession.class);
+        SshShellRunnable runnable = mock(SshShellRunnable.class);
+        when(runnable.getChannelSession()).thenReturn(channel);
+        ctx = new SshContext(runnable, null, null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void propagateContext() throws Exception {
+        assertSame(ctx, SshContextHolder.call(ctx, () -> executor.submit(SshContextHolder::get).get(5, TimeUnit.SECONDS)));
+        assertSame(ctx, SshContextHolder.call(ctx, () -> CompletableFuture.supplyAsync(SshContextHolder::get, executor.asExecutorService())
+                .get(5, TimeUnit.SECONDS)));
+        // no context outside session
+        assertNull(executor.submit(SshContextHolder::get).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sharedExecutorService() throws Exception {
+        ExecutorService service = executor.asExecutorService();
+        // as done by try-with-resources on jdk 19+
+        service.shutdown();
+        service.shutdownNow();
+        assertFalse(service.isShutdown());
+        assertEquals("ok", service.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelOnSessionStop() throws Exception {
+        SshShellSession session = registry.register(channel, "user");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> child = SshContextHolder.call(ctx, () -> executor.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, session.getChildCount());
+
+        // as done by ssh command factory destroy
+        session.stop();
+        assertTrue(child.isCancelled());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        await().atMost(Duration.ofSeconds(5)).until(() -> session.getChildCount() == 0);
+
+        // tasks submitted after session stop are cancelled directly
+        Future<?> late = SshContextHolder.call(ctx, () -> executor.submit(() -> {
+        }));
+        assertTrue(late.isCancelled());
+        assertEquals(0, session.getChildCount());
+    }
+}
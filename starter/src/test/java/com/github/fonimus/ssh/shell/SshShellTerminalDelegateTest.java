@@ -22,7 +22,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class SshShellTerminalDelegateTest {
@@ -37,7 +36,7 @@ public class SshShellTerminalDelegateTest {
 
     @BeforeEach
     void setUp() {
-        SSH_THREAD_CONTEXT.remove();
+        SshContextHolder.remove();
     }
 
     @Test
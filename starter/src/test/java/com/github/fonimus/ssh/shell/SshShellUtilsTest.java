@@ -26,7 +26,10 @@ import org.junit.jupiter.api.Test;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -43,6 +46,52 @@ public class SshShellUtilsTest {
         assertFalse(attributes.getControlChars().isEmpty());
     }
 
+    @Test
+    void testTerminalType() {
+        assertNull(SshShellUtils.terminalType(null));
+        assertEquals("xterm-256color", SshShellUtils.terminalType("xterm-256color"));
+        assertEquals("ansi", SshShellUtils.terminalType("unknown-terminal-type"));
+        // resolved from cache
+        assertEquals("ansi", SshShellUtils.terminalType("unknown-terminal-type"));
+    }
+
+    @Test
+    void testStripAnsi() {
+        String plain = "no sequence";
+        assertSame(plain, SshShellUtils.stripAnsi(plain));
+        assertNull(SshShellUtils.stripAnsi(null));
+        assertEquals("red bold", SshShellUtils.stripAnsi("\u001B[31mred\u001B[0m \u001B[1;4mbold\u001B[m"));
+        assertEquals("up", SshShellUtils.stripAnsi("\u009B2Aup"));
+        assertEquals("link", SshShellUtils.stripAnsi("\u001B]8;;http://host\u001B\\link\u001B]8;;\u0007"));
+        assertEquals("charset", SshShellUtils.stripAnsi("\u001B(Bcharset\u001B7"));
+        // unterminated sequences end with text
+        assertEquals("text", SshShellUtils.stripAnsi("text\u001B[12"));
+        assertEquals("text", SshShellUtils.stripAnsi("text\u001B"));
+    }
+
+    @Test
+    void testVisibleWidth() {
+        assertEquals(0, SshShellUtils.visibleWidth(null));
+        assertEquals(3, SshShellUtils.visibleWidth("\u001B[33mabc\u001B[0m"));
+        // wide characters
+        assertEquals(4, SshShellUtils.visibleWidth("日本"));
+        assertEquals(2, SshShellUtils.visibleWidth("\uD83D\uDE00"));
+        // combining accent
+        assertEquals(1, SshShellUtils.visibleWidth("e\u0301"));
+    }
+
+    @Test
+    void testTruncateAnsi() {
+        String plain = "abcdef";
+        assertSame(plain, SshShellUtils.truncateAnsi(plain, 6));
+        assertEquals("abc", SshShellUtils.truncateAnsi(plain, 3));
+        // trailing sequences are kept so that style is reset
+        assertEquals("\u001B[31mab\u001B[0m", SshShellUtils.truncateAnsi("\u001B[31mabcd\u001B[0m", 2));
+        // wide character is not split
+        assertEquals("a日", SshShellUtils.truncateAnsi("a日本", 4));
+        assertEquals("", SshShellUtils.truncateAnsi(plain, 0));
+    }
+
     public static ChannelSession mockChannelSession(Long id) {
         ChannelSession session = mock(ChannelSession.class);
         ServerSession serverSession = mock(ServerSession.class);
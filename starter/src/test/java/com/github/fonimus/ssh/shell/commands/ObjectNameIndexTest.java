@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.commands;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectNameIndexTest {
+
+    private MBeanServer server;
+
+    private ObjectNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        server = MBeanServerFactory.newMBeanServer();
+        index = new ObjectNameIndex(server);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.stop();
+    }
+
+    private void register(String name) throws Exception {
+        server.registerMBean(new StandardMBean(new Dummy(), DummyMBean.class), new ObjectName(name));
+    }
+
+    @Test
+    void find() throws Exception {
+        register("test:type=a,name=1");
+        register("test:type=b,name=2");
+        register("other:type=a");
+
+        assertEquals(List.of("test:type=a,name=1", "test:type=b,name=2"), index.find("test:", 10));
+        assertEquals(List.of("other:type=a"), index.find("oth", 10));
+        assertEquals(List.of(), index.find("unknown", 10));
+        // delegate is registered too
+        assertEquals(4, index.find("", 10).size());
+    }
+
+    @Test
+    void notifications() throws Exception {
+        register("test:type=a");
+        assertEquals(List.of("test:type=a"), index.find("test", 10));
+
+        register("test:type=b");
+        assertEquals(List.of("test:type=a", "test:type=b"), index.find("test", 10));
+
+        server.unregisterMBean(new ObjectName("test:type=a"));
+        assertEquals(List.of("test:type=b"), index.find("test", 10));
+
+        index.stop();
+        assertEquals(0, index.size());
+        register("test:type=c");
+        // rebuilt on next lookup
+        assertEquals(List.of("test:type=b", "test:type=c"), index.find("test", 10));
+    }
+
+    @Test
+    void cap() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            register("test:type=" + (char) ('a' + i));
+        }
+        List<String> found = index.find("test", 5);
+        assertEquals(List.of("test:type=a", "test:type=b", "test:type=c", "test:type=d", "test:type=e"), found);
+    }
+
+    public interface DummyMBean {
+        int getValue();
+    }
+
+    public static class Dummy implements DummyMBean {
+
+        @Override
+        public int getValue() {
+            return 0;
+        }
+    }
+}
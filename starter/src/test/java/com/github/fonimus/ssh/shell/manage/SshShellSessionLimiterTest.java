@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import com.github.fonimus.ssh.shell.SshShellProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SshShellSessionLimiterTest {
+
+    private static SshShellSessionLimiter limiter(int maxTotal, int maxPerUser, int queueSize, Duration timeout) {
+        SshShellProperties properties = new SshShellProperties();
+        properties.getSessions().setMaxTotal(maxTotal);
+        properties.getSessions().setMaxPerUser(maxPerUser);
+        properties.getSessions().setQueueSize(queueSize);
+        properties.getSessions().setQueueTimeout(timeout);
+        return new SshShellSessionLimiter(properties);
+    }
+
+    @Test
+    void unlimited() throws Exception {
+        SshShellSessionLimiter limiter = limiter(-1, -1, 0, Duration.ZERO);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("user");
+        }
+        assertEquals(100, limiter.getActiveSessions());
+    }
+
+    @Test
+    void maxTotal() throws Exception {
+        SshShellSessionLimiter limiter = limiter(2, -1, 0, Duration.ZERO);
+        limiter.acquire("user1");
+        limiter.acquire("user2");
+        SshShellSessionLimitException e = assertThrows(SshShellSessionLimitException.class, () -> limiter.acquire("user3"));
+        assertTrue(e.getMessage().contains("Maximum number of ssh sessions reached (2)"));
+        assertEquals(1, limiter.getRejectedCount(SshShellSessionLimiter.RejectionReason.limit));
+        limiter.release("user1");
+        limiter.acquire("user3");
+        assertEquals(2, limiter.getActiveSessions());
+    }
+
+    @Test
+    void maxPerUser() throws Exception {
+        SshShellSessionLimiter limiter = limiter(-1, 1, 0, Duration.ZERO);
+        limiter.acquire("user1");
+        limiter.acquire("user2");
+        SshShellSessionLimitException e = assertThrows(SshShellSessionLimitException.class, () -> limiter.acquire("user1"));
+        assertTrue(e.getMessage().contains("for user [user1]"));
+        limiter.release("user1");
+        limiter.acquire("user1");
+    }
+
+    @Test
+    void queue() throws Exception {
+        SshShellSessionLimiter limiter = limiter(1, -1, 1, Duration.ofSeconds(10));
+        limiter.acquire("user1");
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire("user2");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        await().atMost(Duration.ofSeconds(5)).until(() -> limiter.getWaitingSessions() == 1);
+        // queue is full
+        assertThrows(SshShellSessionLimitException.class, () -> limiter.acquire("user3"));
+        assertEquals(1, limiter.getRejectedCount(SshShellSessionLimiter.RejectionReason.queue_full));
+
+        limiter.release("user1");
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(1, limiter.getActiveSessions());
+        assertEquals(1, limiter.getWaitCount());
+        assertTrue(limiter.getWaitTotalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    void queueTimeout() throws Exception {
+        SshShellSessionLimiter limiter = limiter(1, -1, 1, Duration.ofMillis(50));
+        limiter.acquire("user1");
+        SshShellSessionLimitException e = assertThrows(SshShellSessionLimitException.class, () -> limiter.acquire("user2"));
+        assertTrue(e.getMessage().contains("no session slot freed after 50 ms"));
+        assertEquals(1, limiter.getRejectedCount(SshShellSessionLimiter.RejectionReason.timeout));
+        assertEquals(0, limiter.getWaitingSessions());
+    }
+}
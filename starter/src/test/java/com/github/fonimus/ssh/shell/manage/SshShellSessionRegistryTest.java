@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.manage;
+
+import org.apache.sshd.server.channel.ChannelSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SshShellSessionRegistryTest {
+
+    @Test
+    void registry() {
+        SshShellSessionRegistry registry = new SshShellSessionRegistry();
+        ChannelSession channel1 = mock(ChannelSession.class);
+        ChannelSession channel2 = mock(ChannelSession.class);
+
+        SshShellSession session1 = registry.register(channel1, "user1");
+        SshShellSession session2 = registry.register(channel2, "user2");
+        assertNotEquals(session1.getId(), session2.getId());
+        assertEquals(2, registry.size());
+        assertSame(session1, registry.get(session1.getId()));
+        assertSame(session2, registry.get(channel2));
+        assertEquals(SshShellSession.State.waiting, session1.getState());
+        assertEquals("user1", session1.getUser());
+        assertNotNull(session1.getStartTime());
+
+        assertSame(session1, registry.unregister(channel1));
+        assertNull(registry.get(session1.getId()));
+        assertNull(registry.unregister(channel1));
+        assertEquals(1, registry.sessions().size());
+        assertThrows(UnsupportedOperationException.class, () -> registry.sessions().clear());
+    }
+
+    @Test
+    void startupTiming() {
+        SshShellSessionRegistry registry = new SshShellSessionRegistry();
+        SshShellSession session = registry.register(mock(ChannelSession.class), "user");
+        registry.firstPrompt(session);
+        // only first prompt is recorded
+        registry.firstPrompt(session);
+        assertEquals(1, registry.getStartupCount());
+        assertTrue(registry.getStartupTotalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    void stop() {
+        SshShellSession session = new SshShellSession(1, "user", mock(ChannelSession.class));
+        session.running();
+        assertEquals(SshShellSession.State.running, session.getState());
+        Future<?> task = mock(Future.class);
+        session.setTask(task);
+        session.stop();
+        assertEquals(SshShellSession.State.stopping, session.getState());
+        verify(task).cancel(true);
+
+        // stopped before task is known
+        SshShellSession other = new SshShellSession(2, "user", mock(ChannelSession.class));
+        other.stop();
+        other.running();
+        assertEquals(SshShellSession.State.stopping, other.getState());
+        Future<?> otherTask = mock(Future.class);
+        other.setTask(otherTask);
+        verify(otherTask).cancel(true);
+    }
+}
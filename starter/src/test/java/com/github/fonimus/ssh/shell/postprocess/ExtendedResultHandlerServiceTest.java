@@ -16,19 +16,31 @@
 
 package com.github.fonimus.ssh.shell.postprocess;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fonimus.ssh.shell.SshContext;
+import com.github.fonimus.ssh.shell.SshContextHolder;
 import com.github.fonimus.ssh.shell.postprocess.provided.GrepPostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.provided.JsonPointerPostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.provided.PrettyJsonPostProcessor;
 import com.github.fonimus.ssh.shell.postprocess.provided.SavePostProcessor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.shell.ResultHandlerService;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static com.github.fonimus.ssh.shell.SshShellCommandFactory.SSH_THREAD_CONTEXT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -42,10 +54,11 @@ class ExtendedResultHandlerServiceTest {
         ResultHandlerService rhMock = Mockito.mock(ResultHandlerService.class);
         captor = ArgumentCaptor.forClass(Object.class);
         Mockito.doNothing().when(rhMock).handle(captor.capture());
-        rh = new ExtendedResultHandlerService(rhMock,
-                Arrays.asList(new GrepPostProcessor(), new GrepPostProcessor(), new SavePostProcessor())
-        );
-        SSH_THREAD_CONTEXT.set(new SshContext(null, null, null, null));
+        rh = new ExtendedResultHandlerService(rhMock, new PostProcessorRegistry(
+                Arrays.asList(new GrepPostProcessor(), new GrepPostProcessor(), new SavePostProcessor(),
+                        new SizePostProcessor())
+        ));
+        SshContextHolder.set(new SshContext(null, null, null, null));
     }
 
     @Test
@@ -64,7 +77,7 @@ class ExtendedResultHandlerServiceTest {
 
     @Test
     void handleResultUnknownPostProcessor() {
-        SSH_THREAD_CONTEXT.get().getPostProcessorsList().add(
+        SshContextHolder.get().getPostProcessorsList().add(
                 new PostProcessorObject("unknown"
                 ));
 
@@ -76,20 +89,42 @@ class ExtendedResultHandlerServiceTest {
 
     @Test
     void handleResultWrongPostProcessorArgument() {
-        SSH_THREAD_CONTEXT.get().getPostProcessorsList().add(
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("size"
+                ));
+
+        rh.handle("result");
+        assertEquals(2, captor.getAllValues().size());
+        assertTrue(((String) captor.getAllValues().get(0)).contains("can only apply to class"));
+        assertEquals("result", captor.getAllValues().get(1));
+    }
+
+    @Test
+    void handleResultConvertedPostProcessorArgument() {
+        SshContextHolder.get().getPostProcessorsList().add(
                 new PostProcessorObject("grep"
                 ));
 
         Object obj = new PostProcessorObject("test");
         rh.handle(obj);
-        assertEquals(2, captor.getAllValues().size());
-        assertTrue(((String) captor.getAllValues().get(0)).contains("can only apply to class"));
-        assertEquals(obj, captor.getAllValues().get(1));
+        assertEquals(1, captor.getAllValues().size());
+        assertEquals(obj.toString(), captor.getAllValues().get(0));
+    }
+
+    @Test
+    void handleResultTypedPostProcessor() {
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("size"
+                ));
+
+        rh.handle(Arrays.asList("a", "b"));
+        assertEquals(1, captor.getAllValues().size());
+        assertEquals(2, captor.getAllValues().get(0));
     }
 
     @Test
     void handleResultPostProcessorError() {
-        SSH_THREAD_CONTEXT.get().getPostProcessorsList().add(
+        SshContextHolder.get().getPostProcessorsList().add(
                 new PostProcessorObject("save")
         );
         rh.handle("result");
@@ -99,11 +134,106 @@ class ExtendedResultHandlerServiceTest {
 
     @Test
     void handleResultNominal() {
-        SSH_THREAD_CONTEXT.get().getPostProcessorsList().add(
+        SshContextHolder.get().getPostProcessorsList().add(
                 new PostProcessorObject("grep", Collections.singletonList("result"))
         );
         rh.handle("result");
         assertEquals(1, captor.getAllValues().size());
         assertEquals("result", captor.getAllValues().get(0));
     }
+
+    @Test
+    void handleResultStreaming() {
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("grep", Collections.singletonList("line"))
+        );
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("grep", Collections.singletonList("2"))
+        );
+        rh.handle("line1\nline2\nother2\nline22");
+        assertEquals(1, captor.getAllValues().size());
+        assertEquals("line2\nline22", captor.getAllValues().get(0));
+    }
+
+    @Test
+    void handleResultStreamingByChunks() {
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("grep", Collections.singletonList("line"))
+        );
+        String result = IntStream.range(0, 20_000).mapToObj(i -> "line " + i).collect(Collectors.joining("\n"));
+        rh.handle(result);
+        assertTrue(captor.getAllValues().size() > 1);
+        assertEquals(result, captor.getAllValues().stream().map(String.class::cast).collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    void handleResultStreamingThenSave(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("result.txt");
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("grep", Collections.singletonList("keep"))
+        );
+        SshContextHolder.get().getPostProcessorsList().add(
+                new PostProcessorObject("save", Collections.singletonList(file.toString()))
+        );
+        rh.handle("keep 1\ndrop\nkeep 2");
+        assertEquals(1, captor.getAllValues().size());
+        assertTrue(((String) captor.getAllValues().get(0)).startsWith("Result saved to file"));
+        assertEquals("keep 1\nkeep 2\n", Files.readString(file));
+    }
+
+    @Test
+    void handleResultStructured() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ResultHandlerService rhMock = Mockito.mock(ResultHandlerService.class);
+        Mockito.doNothing().when(rhMock).handle(captor.capture());
+        ExtendedResultHandlerService structured = new ExtendedResultHandlerService(rhMock, new PostProcessorRegistry(
+                Arrays.asList(new PrettyJsonPostProcessor(mapper), new JsonPointerPostProcessor(mapper),
+                        new GrepPostProcessor())));
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("test", "value");
+        details.put("list", Collections.singletonList("item"));
+        Map<String, Object> result = Collections.singletonMap("details", details);
+
+        // json tree goes from pretty to json, and is only written once at the end
+        List<PostProcessorObject> stages = SshContextHolder.get().getPostProcessorsList();
+        stages.add(new PostProcessorObject("pretty"));
+        stages.add(new PostProcessorObject("json", Collections.singletonList("/details")));
+        structured.handle(result);
+        assertEquals(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(details),
+                captor.getAllValues().get(0));
+
+        // text nodes are written as is
+        stages.set(1, new PostProcessorObject("json", Collections.singletonList("/details/test")));
+        structured.handle(result);
+        assertEquals("value", captor.getAllValues().get(1));
+
+        // rendered to text for other post processors
+        stages.set(1, new PostProcessorObject("grep", Collections.singletonList("item")));
+        structured.handle(result);
+        assertEquals("    \"list\" : [ \"item\" ]", captor.getAllValues().get(2));
+
+        // pretty alone still produces text
+        stages.remove(1);
+        structured.handle(result);
+        assertEquals(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(result),
+                captor.getAllValues().get(3));
+    }
+
+    private static class SizePostProcessor implements PostProcessor<Collection<?>, Integer> {
+
+        @Override
+        public String getName() {
+            return "size";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Collection size";
+        }
+
+        @Override
+        public Integer process(Collection<?> result, List<String> parameters) {
+            return result.size();
+        }
+    }
 }
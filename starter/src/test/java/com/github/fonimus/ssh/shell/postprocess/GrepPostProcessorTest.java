@@ -22,9 +22,10 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertAll;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class GrepPostProcessorTest {
 
@@ -47,4 +48,57 @@ class GrepPostProcessorTest {
                 () -> assertEquals("toto", processor.process(TEST, Collections.singletonList("toto")))
         );
     }
+
+    @Test
+    void processOptions() {
+        String lines = "Error one\nwarn two\nerror three\ninfo four\nok five";
+        assertAll("grep options",
+                () -> assertEquals("Error one\nerror three",
+                        processor.process(lines, Arrays.asList("-i", "ERROR"))),
+                () -> assertEquals("warn two\ninfo four\nok five",
+                        processor.process(lines, Arrays.asList("-v", "-i", "error"))),
+                () -> assertEquals("warn two\ninfo four\nok five",
+                        processor.process(lines, Arrays.asList("-vi", "error"))),
+                () -> assertEquals("error three\ninfo four",
+                        processor.process(lines, Arrays.asList("-E", "^e.*e$", "f[aeiou]{2}r"))),
+                () -> assertEquals("Error one\nerror three",
+                        processor.process(lines, Arrays.asList("-Ei", "^E"))),
+                () -> assertEquals("3", processor.process(lines, Arrays.asList("-c", "n"))),
+                () -> assertEquals("3", processor.process(lines, Arrays.asList("-c", "-v", "-i", "error"))),
+                () -> assertEquals("warn two\ninfo four", processor.process(lines, Arrays.asList("two", "four"))),
+                () -> assertEquals("Error one\nwarn two\ninfo four",
+                        processor.process(lines, Arrays.asList("-i", "TWO", "four", "one"))),
+                () -> assertEquals("-v", processor.process("-v\nother", Arrays.asList("--", "-v"))),
+                () -> assertThrows(PostProcessorException.class,
+                        () -> processor.process(lines, Arrays.asList("-E", "(unclosed"))),
+                () -> assertThrows(PostProcessorException.class,
+                        () -> processor.process(lines, Arrays.asList("two", "-A")))
+        );
+    }
+
+    @Test
+    void processContext() throws Exception {
+        String lines = IntStream.rangeClosed(1, 12).mapToObj(i -> "line " + i).collect(Collectors.joining("\n"));
+        assertEquals("line 2\nline 3\nline 4\n--\nline 10\nline 11\nline 12",
+                processor.process(lines, Arrays.asList("-C", "1", "-E", "line (3|11)$")));
+        assertEquals("line 3\nline 4\nline 5",
+                processor.process(lines, Arrays.asList("-A2", "line 3")));
+        assertEquals("line 1\nline 2\nline 3\nline 4\nline 5",
+                processor.process(lines, Arrays.asList("-B", "2", "-E", "line [35]$")));
+    }
+
+    @Test
+    void processColored() throws Exception {
+        String line = "\u001B[31mred\u001B[0m text";
+        // escape sequences are not part of searched text, but kept in output
+        assertEquals("", processor.process(line, Collections.singletonList("31")));
+        assertEquals(line, processor.process(line, Collections.singletonList("red text")));
+        assertEquals(line, processor.process(line, Arrays.asList("-E", "^red")));
+    }
+
+    @Test
+    void processLines() throws Exception {
+        assertEquals(Arrays.asList("test", "test"),
+                processor.process(TEST.lines(), Collections.singletonList("test")).collect(Collectors.toList()));
+    }
 }
@@ -24,9 +24,10 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertAll;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class HighlightPostProcessorTest {
 
@@ -53,4 +54,61 @@ class HighlightPostProcessorTest {
                         PromptColor.YELLOW)), processor.process(TEST, Arrays.asList("test", "toto")))
         );
     }
+
+    private static String yellow(String message) {
+        return SshShellHelper.getBackgroundColoredMessage(message, PromptColor.YELLOW);
+    }
+
+    @Test
+    void processLiteral() throws Exception {
+        // terms are literal by default
+        assertEquals("a" + yellow(".") + "b", processor.process("a.b", Collections.singletonList(".")));
+        // longest term wins when terms start at same position
+        assertEquals(yellow("test") + "er", processor.process("tester", Arrays.asList("te", "test")));
+        // ansi sequences added by a previous term are not highlighted again
+        String once = processor.process("error 43", Collections.singletonList("error"));
+        assertEquals(yellow("error") + " " + yellow("43"),
+                processor.process(once, Collections.singletonList("43")));
+        assertEquals(yellow("Error") + " " + yellow("ERROR"),
+                processor.process("Error ERROR", Arrays.asList("-i", "error")));
+    }
+
+    @Test
+    void processColored() throws Exception {
+        String bold = "\u001B[1mbold\u001B[0m text";
+        assertEquals(bold, processor.process(bold, Collections.singletonList("1m")));
+        // terms are not matched across existing sequences
+        assertEquals(bold, processor.process(bold, Collections.singletonList("bold text")));
+        assertEquals("\u001B[1m" + yellow("bold") + "\u001B[0m text",
+                processor.process(bold, Collections.singletonList("bold")));
+        String link = "\u001B]8;;http://host\u0007link\u001B]8;;\u0007";
+        assertEquals(link, processor.process(link, Collections.singletonList("host")));
+        assertEquals("\u001B]8;;http://host\u0007" + yellow("link") + "\u001B]8;;\u0007",
+                processor.process(link, Collections.singletonList("link")));
+    }
+
+    @Test
+    void processRegexAndColors() throws Exception {
+        assertEquals(yellow("a1") + " b " + yellow("c22"),
+                processor.process("a1 b c22", Arrays.asList("-E", "[a-z]\\d+")));
+        assertEquals(SshShellHelper.getBackgroundColoredMessage("ko", PromptColor.RED) + " " +
+                        SshShellHelper.getBackgroundColoredMessage("ok", PromptColor.GREEN) + " " + yellow("warn"),
+                processor.process("ko ok warn", Arrays.asList("warn", "-c", "red", "ko", "-c", "GREEN", "ok")));
+        // groups within user regex do not shift term colors
+        assertEquals(yellow("aa") + " " + SshShellHelper.getBackgroundColoredMessage("b", PromptColor.BLUE),
+                processor.process("aa b", Arrays.asList("-E", "(a)(a)", "-c", "blue", "b")));
+        assertThrows(PostProcessorException.class, () -> processor.process("x", Arrays.asList("-c", "pink", "x")));
+        assertThrows(PostProcessorException.class, () -> processor.process("x", Arrays.asList("-E", "(x")));
+    }
+
+    @Test
+    void processLargeInput() throws Exception {
+        // several megabytes, each line scanned once for all terms
+        String input = IntStream.range(0, 100_000).mapToObj(i -> "line " + i + " with some info and warn or error")
+                .collect(Collectors.joining("\n"));
+        String result = processor.process(input, Arrays.asList("info", "-c", "red", "error", "warn"));
+        assertEquals(input.lines().count(), result.lines().count());
+        assertTrue(result.lines().skip(42).findFirst().orElseThrow().startsWith("line 42 with some " + yellow("info")));
+        assertEquals(input, result.replaceAll("\u001B\\[[0-9;]*m", ""));
+    }
 }
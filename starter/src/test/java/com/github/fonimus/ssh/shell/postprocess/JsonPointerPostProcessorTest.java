@@ -16,6 +16,7 @@
 
 package com.github.fonimus.ssh.shell.postprocess;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fonimus.ssh.shell.postprocess.provided.JsonPointerPostProcessor;
 import org.junit.jupiter.api.BeforeAll;
@@ -24,9 +25,10 @@ import org.springframework.boot.actuate.health.Health;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertAll;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class JsonPointerPostProcessorTest {
 
@@ -47,33 +49,100 @@ class JsonPointerPostProcessorTest {
         String test = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(health);
 
         assertAll("json pointer",
-                () -> assertEquals("not-a-json", processor.process("not-a-json", Collections.singletonList("/test"))),
-                () -> assertEquals(test, processor.process(test, null)),
-                () -> assertEquals(test, processor.process(test, Collections.singletonList(null))),
-                () -> assertEquals(test, processor.process(test, Collections.singletonList(""))),
+                () -> assertEquals("not-a-json", text("not-a-json", Collections.singletonList("/test"))),
+                () -> assertEquals(test, text(test, null)),
+                () -> assertEquals(test, text(test, Collections.singletonList(null))),
+                () -> assertEquals(test, text(test, Collections.singletonList(""))),
                 () -> assertEquals("Invalid input: JSON Pointer expression must start with '/': \"test\"",
-                        processor.process(test, Collections.singletonList("test"))),
+                        text(test, Collections.singletonList("test"))),
                 () -> assertEquals("No node found with json path expression: /not-existing",
-                        processor.process(test, Collections.singletonList("/not-existing"))),
+                        text(test, Collections.singletonList("/not-existing"))),
                 () -> assertEqualsNoLineSeparator("{  \"test\" : \"value\",  \"map\" : {    \"key\" : \"map-value\"  " +
                                 "},  \"list\" : [ \"item\" ]}",
-                        processor.process(test, Collections.singletonList("/details"))),
-                () -> assertEquals("value", processor.process(test, Collections.singletonList("/details/test"))),
-                () -> assertEquals("[ \"item\" ]", processor.process(test, Collections.singletonList("/details/list"))),
-                () -> assertEquals("item", processor.process(test, Collections.singletonList("/details/list/0"))),
+                        text(test, Collections.singletonList("/details"))),
+                () -> assertEquals("value", text(test, Collections.singletonList("/details/test"))),
+                () -> assertEquals("[ \"item\" ]", text(test, Collections.singletonList("/details/list"))),
+                () -> assertEquals("item", text(test, Collections.singletonList("/details/list/0"))),
                 () -> assertEquals("No node found with json path expression: /details/list/1",
-                        processor.process(test, Collections.singletonList("/details/list/1"))),
-                () -> assertEqualsNoLineSeparator("{  \"key\" : \"map-value\"}", processor.process(test,
+                        text(test, Collections.singletonList("/details/list/1"))),
+                () -> assertEqualsNoLineSeparator("{  \"key\" : \"map-value\"}", text(test,
                         Collections.singletonList("/details/map"))),
-                () -> assertEquals("map-value", processor.process(test, Collections.singletonList("/details/map/key"))),
-                () -> assertEquals("map-value", processor.process(test, Arrays.asList("/details/map/key",
+                () -> assertEquals("map-value", text(test, Collections.singletonList("/details/map/key"))),
+                () -> assertEquals("map-value", text(test, Arrays.asList("/details/map/key",
                         "dont-care"))),
                 () -> assertEquals("No node found with json path expression: /details/map/not-a-key",
-                        processor.process(test, Collections.singletonList("/details/map/not-a-key")))
+                        text(test, Collections.singletonList("/details/map/not-a-key")))
         );
 
     }
 
+    @Test
+    void processTree() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode tree = mapper.readTree("{\"details\":{\"map\":{\"key\":\"map-value\"}}}");
+        // no parsing nor copy of tree from pretty post processor
+        assertSame(tree.get("details").get("map"), processor.process(tree, Collections.singletonList("/details/map")));
+        assertEquals("map-value", text(Collections.singletonMap("key", "map-value"), Collections.singletonList("/key")));
+        assertFalse(processor.canRender("text"));
+    }
+
+    @Test
+    void processWildcardsAndSlices() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String json = "{\"contexts\":{\"app\":{\"beans\":{\"a\":{\"type\":\"A\"},\"b\":{\"type\":\"B\"}}}," +
+                "\"parent\":{\"beans\":{\"c\":{\"type\":\"C\",\"scope\":\"x\"},\"d\":{\"scope\":\"y\"}}}}," +
+                "\"list\":[0,1,2,3,4],\"a/b\":{\"*\":\"star\"}}";
+        JsonNode tree = mapper.readTree(json);
+        Map<?, ?> object = mapper.readValue(json, Map.class);
+        // same result from text (streaming parser), tree and object (filtered serialization)
+        for (Object result : Arrays.asList(json, tree, object)) {
+            assertAll("json path on " + result.getClass().getSimpleName(),
+                    () -> assertEquals(mapper.readTree("[\"A\",\"B\",\"C\"]"),
+                            processor.process(result, Collections.singletonList("/contexts/*/beans/*/type"))),
+                    () -> assertEquals(mapper.readTree("[\"x\",\"y\"]"),
+                            processor.process(result, Collections.singletonList("/contexts/parent/beans/*/scope"))),
+                    () -> assertEquals(mapper.readTree("[1,2]"),
+                            processor.process(result, Collections.singletonList("/list/1:3"))),
+                    () -> assertEquals(mapper.readTree("[0,1]"),
+                            processor.process(result, Collections.singletonList("/list/:2"))),
+                    () -> assertEquals(mapper.readTree("[3,4]"),
+                            processor.process(result, Collections.singletonList("/list/3:"))),
+                    () -> assertEquals(mapper.readTree("2"),
+                            processor.process(result, Collections.singletonList("/list/2"))),
+                    () -> assertEquals(mapper.readTree("[\"star\"]"),
+                            processor.process(result, Collections.singletonList("/a~1b/*"))),
+                    () -> assertEquals("No node found with json path expression: /contexts/*/other",
+                            processor.process(result, Collections.singletonList("/contexts/*/other")))
+            );
+        }
+    }
+
+    @Test
+    void processLargeText() throws Exception {
+        // about 20 MB of json text, never read as a whole tree
+        StringBuilder sb = new StringBuilder("{\"contexts\":{");
+        for (int c = 0; c < 10; c++) {
+            sb.append(c == 0 ? "" : ",").append("\"ctx").append(c).append("\":{\"beans\":{");
+            for (int b = 0; b < 20_000; b++) {
+                sb.append(b == 0 ? "" : ",").append("\"bean").append(b).append("\":{\"aliases\":[],")
+                        .append("\"scope\":\"singleton\",\"type\":\"com.example.Bean").append(b)
+                        .append("\",\"dependencies\":[\"a\",\"b\",\"c\"]}");
+            }
+            sb.append("}}");
+        }
+        String json = sb.append("}}").toString();
+        Object types = processor.process(json, Collections.singletonList("/contexts/*/beans/*/type"));
+        assertEquals(200_000, ((JsonNode) types).size());
+        assertEquals("com.example.Bean42", ((JsonNode) types).get(42).asText());
+        assertEquals(new ObjectMapper().readTree(json).at("/contexts/ctx9/beans/bean7"),
+                processor.process(json, Collections.singletonList("/contexts/ctx9/beans/bean7")));
+    }
+
+    private static String text(Object result, List<String> parameters) {
+        Object processed = processor.process(result, parameters);
+        return processor.canRender(processed) ? processor.render(processed) : (String) processed;
+    }
+
     private static void assertEqualsNoLineSeparator(String expected, String actual) {
         assertEquals(clean(expected), clean(actual));
     }
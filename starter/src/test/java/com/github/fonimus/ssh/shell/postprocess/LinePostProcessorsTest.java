@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+import com.github.fonimus.ssh.shell.postprocess.provided.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinePostProcessorsTest {
+
+    public static final String TEST = "b 3\na 10\nc 2\nc 2\na 1\nb 3";
+
+    /**
+     * About 1 GB of lines, generated lazily
+     */
+    private static final long BIG_LINES = 10_000_000;
+
+    private static Stream<String> big(AtomicLong produced) {
+        String padding = "x".repeat(90);
+        return LongStream.range(0, BIG_LINES).peek(i -> produced.incrementAndGet())
+                .mapToObj(i -> padding + " " + (i * 7919 % BIG_LINES));
+    }
+
+    private static List<String> list(Stream<String> lines) {
+        try (lines) {
+            return lines.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void head() throws Exception {
+        HeadPostProcessor processor = new HeadPostProcessor();
+        assertEquals("b 3\na 10", processor.process(TEST, Collections.singletonList("2")));
+        assertEquals("b 3", processor.process(TEST, Arrays.asList("-n", "1")));
+        assertEquals(TEST, processor.process(TEST, null));
+        assertThrows(PostProcessorException.class, () -> processor.process(TEST, Collections.singletonList("x")));
+        // previous stages stop producing once enough lines have been read
+        AtomicLong produced = new AtomicLong();
+        assertEquals(5, list(processor.process(big(produced), Collections.singletonList("5"))).size());
+        assertEquals(5, produced.get());
+    }
+
+    @Test
+    void tail() throws Exception {
+        TailPostProcessor processor = new TailPostProcessor();
+        assertEquals("a 1\nb 3", processor.process(TEST, Collections.singletonList("2")));
+        assertEquals(TEST, processor.process(TEST, Collections.singletonList("20")));
+        assertEquals("", processor.process(TEST, Collections.singletonList("0")));
+        AtomicLong produced = new AtomicLong();
+        Stream<String> lines = processor.process(big(produced), Collections.singletonList("3"));
+        // nothing is read until output is
+        assertEquals(0, produced.get());
+        List<String> result = list(lines);
+        assertEquals(BIG_LINES, produced.get());
+        assertEquals(3, result.size());
+        assertTrue(result.get(2).endsWith(" " + ((BIG_LINES - 1) * 7919 % BIG_LINES)));
+    }
+
+    @Test
+    void count() throws Exception {
+        CountPostProcessor processor = new CountPostProcessor();
+        assertEquals("6", processor.process(TEST, null));
+        assertEquals(List.of(String.valueOf(BIG_LINES)), list(processor.process(big(new AtomicLong()), null)));
+    }
+
+    @Test
+    void uniq() throws Exception {
+        UniqPostProcessor processor = new UniqPostProcessor();
+        assertEquals("b 3\na 10\nc 2\na 1\nb 3", processor.process(TEST, null));
+        assertEquals("      1 b 3\n      1 a 10\n      2 c 2\n      1 a 1\n      1 b 3",
+                processor.process(TEST, Collections.singletonList("-c")));
+        assertEquals("", processor.process("", null));
+    }
+
+    @Test
+    void top() throws Exception {
+        TopPostProcessor processor = new TopPostProcessor();
+        assertEquals("a 10\nb 3", processor.process(TEST, Arrays.asList("-k", "2", "-by", "2")));
+        assertEquals("c 2\nc 2", processor.process(TEST, Arrays.asList("-k", "2")));
+        assertEquals("│ x │ 5 │\n│ y │ 2 │", processor.process("│ y │ 2 │\n│ x │ 5 │\n│ z │ 1 │",
+                Arrays.asList("-k", "2", "-by", "2")));
+        // only k lines kept in memory
+        List<String> result = list(processor.process(big(new AtomicLong()), Arrays.asList("-k", "3", "-by", "2")));
+        assertEquals(3, result.size());
+        assertTrue(result.get(0).endsWith(" " + (BIG_LINES - 1)));
+        assertTrue(result.get(2).endsWith(" " + (BIG_LINES - 3)));
+    }
+
+    @Test
+    void largeCount() throws Exception {
+        // memory follows lines read, not requested count
+        String max = String.valueOf(Integer.MAX_VALUE);
+        assertEquals(TEST, new TailPostProcessor().process(TEST, Collections.singletonList(max)));
+        assertEquals(TEST, new TailPostProcessor().process(TEST, Arrays.asList("-n", max)));
+        assertEquals("a 10\nb 3\nb 3\nc 2\nc 2\na 1",
+                new TopPostProcessor().process(TEST, Arrays.asList("-k", max, "-by", "2")));
+    }
+
+    @Test
+    void sort() throws Exception {
+        SortPostProcessor processor = new SortPostProcessor();
+        assertEquals("a 1\na 10\nb 3\nb 3\nc 2\nc 2", processor.process(TEST, null));
+        assertEquals("c 2\nc 2\nb 3\nb 3\na 10\na 1", processor.process(TEST, Collections.singletonList("-r")));
+        assertEquals("a 1\nc 2\nc 2\nb 3\nb 3\na 10", processor.process(TEST, Arrays.asList("-n", "-k", "2")));
+    }
+
+    @Test
+    void sortSpill() throws Exception {
+        // tiny memory threshold to force spilling sorted chunks to disk
+        SortPostProcessor processor = new SortPostProcessor(100);
+        List<String> numbers = IntStream.range(0, 1000).map(i -> i * 7 % 1000).mapToObj(String::valueOf)
+                .collect(Collectors.toList());
+        List<Path> before = chunks();
+        Stream<String> sorted = processor.process(numbers.stream(), Collections.singletonList("-n"));
+        List<String> expected = new ArrayList<>(numbers);
+        expected.sort((s1, s2) -> Integer.compare(Integer.parseInt(s1), Integer.parseInt(s2)));
+        assertEquals(expected, list(sorted));
+        // chunks deleted once stream is closed
+        assertEquals(before, chunks());
+    }
+
+    private static List<Path> chunks() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(f -> f.getFileName().toString().startsWith("ssh-shell-sort-")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+import com.github.fonimus.ssh.shell.postprocess.provided.GrepPostProcessor;
+import com.github.fonimus.ssh.shell.postprocess.provided.SavePostProcessor;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostProcessorRegistryTest {
+
+    private final PostProcessorRegistry registry = new PostProcessorRegistry(Arrays.asList(
+            new GrepPostProcessor(), new SavePostProcessor(), new KeysPostProcessor(), new GrepPostProcessor() {
+                @Override
+                public String getDescription() {
+                    return "duplicate";
+                }
+            }));
+
+    @Test
+    void types() {
+        assertEquals(Arrays.asList("grep", "save", "keys"), List.copyOf(registry.names()));
+        assertEquals(String.class, registry.get("grep").getInputType());
+        assertEquals(String.class, registry.get("grep").getOutputType());
+        assertTrue(registry.get("grep").isStreaming());
+        assertNotEquals("duplicate", registry.get("grep").getPostProcessor().getDescription());
+        assertEquals(Object.class, registry.get("save").getInputType());
+        assertEquals(Map.class, registry.get("keys").getInputType());
+        assertEquals(List.class, registry.get("keys").getOutputType());
+        assertFalse(registry.get("keys").isStreaming());
+        assertNull(registry.get("unknown"));
+    }
+
+    @Test
+    void validate() {
+        assertNull(registry.validate(Collections.emptyList()));
+        assertNull(registry.validate(Arrays.asList(new PostProcessorObject("keys"), new PostProcessorObject("grep"),
+                new PostProcessorObject("save"))));
+        assertEquals("Unknown post processor [grpe]", registry.validate(
+                Collections.singletonList(new PostProcessorObject("grpe"))));
+        String error = registry.validate(Arrays.asList(new PostProcessorObject("grep"), new PostProcessorObject("keys")));
+        assertNotNull(error);
+        assertTrue(error.contains("can only apply to class [java.util.Map]"));
+        // redirection is part of syntax, even when save post processor is not registered
+        assertNull(new PostProcessorRegistry(Collections.emptyList()).validate(
+                Collections.singletonList(new PostProcessorObject("save"))));
+    }
+
+    @Test
+    void convert() {
+        assertEquals("text", registry.convert("text", String.class));
+        assertEquals("text", registry.convert(new StringBuilder("text"), String.class));
+        AttributedString attributed = new AttributedString("text", AttributedStyle.BOLD);
+        assertEquals(attributed.toAnsi(), registry.convert(attributed, String.class));
+        assertEquals("[a, b]", registry.convert(Arrays.asList("a", "b"), String.class));
+        Map<String, String> map = Map.of("k", "v");
+        assertSame(map, registry.convert(map, Map.class));
+        assertNull(registry.convert("text", Map.class));
+        assertTrue(registry.canConvert(Integer.class, String.class));
+        assertTrue(registry.canConvert(HashMap.class, Map.class));
+        assertFalse(registry.canConvert(String.class, Map.class));
+    }
+
+    @Test
+    void render() {
+        PostProcessorRegistry withTree = new PostProcessorRegistry(Arrays.asList(
+                new TreePostProcessor(), new SavePostProcessor()));
+        Tree tree = new Tree("value");
+        assertEquals("tree: value", withTree.render(tree));
+        assertEquals("text", withTree.render("text"));
+        assertEquals("tree: value", withTree.convert(tree, String.class));
+        // structured result kept for post processors rendering it, text for others
+        assertSame(tree, withTree.convert(tree, withTree.get("tree")));
+        assertEquals("tree: value", withTree.convert(tree, withTree.get("save")));
+        assertSame(tree, registry.render(tree));
+    }
+
+    private static class Tree {
+
+        private final String value;
+
+        private Tree(String value) {
+            this.value = value;
+        }
+    }
+
+    private static class TreePostProcessor implements PostProcessor<Object, Tree>, ResultRenderer {
+
+        @Override
+        public String getName() {
+            return "tree";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Structured result";
+        }
+
+        @Override
+        public Tree process(Object result, List<String> parameters) {
+            return result instanceof Tree ? (Tree) result : new Tree(result.toString());
+        }
+
+        @Override
+        public boolean canRender(Object result) {
+            return result instanceof Tree;
+        }
+
+        @Override
+        public String render(Object result) {
+            return "tree: " + ((Tree) result).value;
+        }
+    }
+
+    private static class KeysPostProcessor implements PostProcessor<Map<String, ?>, List<String>> {
+
+        @Override
+        public String getName() {
+            return "keys";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Map keys";
+        }
+
+        @Override
+        public List<String> process(Map<String, ?> result, List<String> parameters) {
+            return List.copyOf(result.keySet());
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.github.fonimus.ssh.shell.postprocess;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fonimus.ssh.shell.postprocess.provided.PrettyJsonPostProcessor;
 import org.junit.jupiter.api.BeforeAll;
@@ -26,8 +27,7 @@ import org.springframework.boot.actuate.health.Health;
 
 import java.util.Collections;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 class PrettyJsonPostProcessorTest {
 
@@ -40,17 +40,23 @@ class PrettyJsonPostProcessorTest {
 
     @Test
     void process() throws Exception {
-        String test = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(
-                Health.down()
-                        .withDetail("test", "value")
-                        .withDetail("map", Collections.singletonMap("key", "map-value"))
-                        .withDetail("list", Collections.singletonList("item"))
-                        .build());
+        Health health = Health.down()
+                .withDetail("test", "value")
+                .withDetail("map", Collections.singletonMap("key", "map-value"))
+                .withDetail("list", Collections.singletonList("item"))
+                .build();
+        String test = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(health);
 
+        assertEquals(test, processor.process(health, null));
         assertEquals("\"test\"", processor.process("test", null));
-        assertEquals(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(test),
-                processor.process(test, null));
+        // equivalent json tree, for post processors working on trees
+        JsonNode tree = processor.processStructured(health, null);
+        assertEquals(new ObjectMapper().readTree(test), tree);
+        assertSame(tree, processor.processStructured(tree, null));
+        assertEquals(new ObjectMapper().readTree("\"test\""), processor.processStructured("test", null));
         assertThrows(PostProcessorException.class, () -> processor.process(new NotSerializableObject("test"), null));
+        assertThrows(PostProcessorException.class,
+                () -> processor.processStructured(new NotSerializableObject("test"), null));
     }
 
     public static class NotSerializableObject {
@@ -25,8 +25,7 @@ import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SavePostProcessorTest {
 
@@ -59,5 +58,9 @@ class SavePostProcessorTest {
                         .getMessage().startsWith("Unable to write to file:"));
         assertTrue(processor.process(TEST, Arrays.asList("target/test.txt", "other param ignored")).startsWith(
                 "Result saved to file:"));
+        processor.process(TEST, Collections.singletonList("target/test.txt"));
+        assertEquals(TEST + "\n" + TEST + "\n", Files.readString(file.toPath()));
+        processor.process("\u001B[31m" + TEST + "\u001B[0m", Arrays.asList("-t", "target/test.txt"));
+        assertEquals(TEST + "\n", Files.readString(file.toPath()));
     }
 }
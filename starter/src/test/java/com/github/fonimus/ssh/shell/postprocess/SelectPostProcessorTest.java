@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess;
+
+import com.github.fonimus.ssh.shell.postprocess.provided.SelectPostProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectPostProcessorTest {
+
+    private final SelectPostProcessor processor = new SelectPostProcessor();
+
+    private static List<Object> select(Object result, String... parameters) throws PostProcessorException {
+        Object selected = new SelectPostProcessor().process(result, Arrays.asList(parameters));
+        assertTrue(selected instanceof List);
+        return new ArrayList<>((List<?>) selected);
+    }
+
+    private static Exchanges exchanges() {
+        return new Exchanges(Arrays.asList(
+                new Exchange(new Request("/a", "GET"), 200, 12),
+                new Exchange(new Request("/b", "POST"), 500, 340),
+                new Exchange(new Request("/c", "GET"), 404, 3),
+                new Exchange(new Request("/d", "GET"), 200, 55)));
+    }
+
+    @Test
+    void single() throws Exception {
+        Exchanges exchanges = exchanges();
+        assertSame(exchanges, processor.process(exchanges, Collections.emptyList()));
+        assertEquals("/b", processor.process(exchanges, Collections.singletonList("exchanges.1.request.uri")));
+        assertEquals(4, processor.process(exchanges, Collections.singletonList("exchanges.size")));
+        assertEquals("No value found with select path: exchanges.0.other",
+                processor.process(exchanges, Collections.singletonList("exchanges.0.other")));
+        assertEquals("null", processor.process(Collections.singletonMap("key", null),
+                Collections.singletonList("key")));
+    }
+
+    @Test
+    void mapFilterSortLimit() throws Exception {
+        Exchanges exchanges = exchanges();
+        assertEquals(Arrays.asList("/a", "/b", "/c", "/d"), select(exchanges, "exchanges[]", "fields", "request.uri"));
+        assertEquals(Arrays.asList("/a", "/c", "/d"),
+                select(exchanges, "exchanges[]", "where", "request.method", "==", "GET", "fields", "request.uri"));
+        assertEquals(Arrays.asList("/b", "/c"),
+                select(exchanges, "exchanges[]", "where", "status", ">=", "400", "fields", "request.uri"));
+        assertEquals(Arrays.asList(340L, 55L),
+                select(exchanges, "exchanges[]", "sort", "-timeTaken", "limit", "2", "fields", "timeTaken"));
+        assertEquals(Arrays.asList("/b", "/d"), select(exchanges, "exchanges[]", "where", "status", "!=", "404",
+                "where", "timeTaken", ">", "50", "fields", "request.uri"));
+        assertEquals(Collections.singletonList("/b"),
+                select(exchanges, "exchanges[]", "where", "request.uri", "~", "b", "fields", "request.uri"));
+        List<Object> rows = select(exchanges, "exchanges[]", "sort", "timeTaken", "limit", "1",
+                "fields", "request.uri,status");
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("request.uri", "/c");
+        row.put("status", 404);
+        assertEquals(Collections.singletonList(row), rows);
+        // one value per line when displayed
+        assertEquals("/a\n/b", processor.process(exchanges, Arrays.asList("exchanges[]", "limit", "2", "fields",
+                "request.uri")).toString());
+    }
+
+    @Test
+    void mapsArraysAndRecords() throws Exception {
+        Map<String, Object> beans = new LinkedHashMap<>();
+        beans.put("a", new Bean("singleton", "A"));
+        beans.put("b", new Bean("prototype", "B"));
+        beans.put("c", new Bean("singleton", "C"));
+        Map<String, Object> contexts = Collections.singletonMap("contexts",
+                Collections.singletonMap("app", Collections.singletonMap("beans", beans)));
+        assertEquals(Arrays.asList("A", "C"), select(contexts, "contexts.*.beans.*", "where", "scope", "==",
+                "singleton", "fields", "type"));
+        assertEquals(Arrays.asList(3, 1, 2), select(new int[]{3, 1, 2}, "[]"));
+        assertEquals(Arrays.asList(1, 2, 3), select(new int[]{3, 1, 2}, "[]", "sort", "."));
+        assertEquals(Arrays.asList("x", "y"), select(Arrays.asList(new Named("x"), new Named("y")), "[]",
+                "fields", "name"));
+    }
+
+    @Test
+    void errors() {
+        assertThrows(PostProcessorException.class, () -> processor.process("x", Arrays.asList("[]", "order", "a")));
+        assertThrows(PostProcessorException.class, () -> processor.process("x", Arrays.asList("[]", "limit")));
+        assertThrows(PostProcessorException.class, () -> processor.process("x", Arrays.asList("[]", "limit", "-1")));
+        assertThrows(PostProcessorException.class,
+                () -> processor.process("x", Arrays.asList("[]", "where", "a", "=", "b")));
+    }
+
+    public static class Exchanges {
+
+        private final List<Exchange> exchanges;
+
+        public Exchanges(List<Exchange> exchanges) {
+            this.exchanges = exchanges;
+        }
+
+        public List<Exchange> getExchanges() {
+            return exchanges;
+        }
+    }
+
+    public static class Exchange {
+
+        private final Request request;
+
+        private final int status;
+
+        private final long timeTaken;
+
+        public Exchange(Request request, int status, long timeTaken) {
+            this.request = request;
+            this.status = status;
+            this.timeTaken = timeTaken;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getTimeTaken() {
+            return timeTaken;
+        }
+    }
+
+    public static class Request {
+
+        public final String uri;
+
+        private final String method;
+
+        public Request(String uri, String method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    public record Bean(String scope, String type) {
+    }
+
+    private record Named(String name) {
+    }
+}
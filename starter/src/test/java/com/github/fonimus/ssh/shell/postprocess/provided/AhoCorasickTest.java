@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickTest {
+
+    @Test
+    void matches() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers"), false);
+        assertTrue(automaton.matches("ushers"));
+        assertTrue(automaton.matches("this"));
+        assertTrue(automaton.matches("ahe"));
+        assertFalse(automaton.matches("hi s"));
+        assertFalse(automaton.matches("HERS"));
+        assertFalse(automaton.matches(""));
+        // failure transitions: 'shi' then 's' must find 'his'
+        assertTrue(new AhoCorasick(Arrays.asList("shx", "his"), false).matches("shis"));
+    }
+
+    @Test
+    void ignoreCase() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("Thread-1", "ERROR"), true);
+        assertTrue(automaton.matches("some error here"));
+        assertTrue(automaton.matches("THREAD-12"));
+        assertFalse(automaton.matches("thread-2"));
+    }
+
+    @Test
+    void emptyLiteral() {
+        assertTrue(new AhoCorasick(Collections.singletonList(""), false).matches("anything"));
+    }
+
+    @Test
+    void sameAsContains() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            List<String> literals = Arrays.asList(random(random, 1 + random.nextInt(3)),
+                    random(random, 1 + random.nextInt(4)), random(random, 2));
+            AhoCorasick automaton = new AhoCorasick(literals, false);
+            for (int i = 0; i < 50; i++) {
+                String text = random(random, random.nextInt(20));
+                boolean expected = literals.stream().anyMatch(text::contains);
+                assertEquals(expected, automaton.matches(text), literals + " in " + text);
+            }
+        }
+    }
+
+    @Test
+    void cache() {
+        GrepPostProcessor grep = new GrepPostProcessor();
+        int before = GrepPostProcessor.AUTOMATA.size();
+        String pattern = "cached-" + System.nanoTime();
+        assertDoesNotThrow(() -> grep.process("a\nb", Arrays.asList(pattern, "b")));
+        assertDoesNotThrow(() -> grep.process("c\nd", Arrays.asList(pattern, "b")));
+        assertEquals(Math.min(before + 1, GrepPostProcessor.CACHE_SIZE), GrepPostProcessor.AUTOMATA.size());
+    }
+
+    private static String random(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020 François Onimus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.fonimus.ssh.shell.postprocess.provided;
+
+import com.github.fonimus.ssh.shell.SshShellProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.zip.GZIPInputStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSinkRegistryTest {
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void keptOpenAndFlushedPeriodically(@TempDir Path dir) throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        SshShellProperties.Save properties = new SshShellProperties.Save();
+        properties.setFlushInterval(Duration.ofMillis(50));
+        Object owner = new Object();
+        Path file = dir.resolve("out.txt");
+        try (FileSinkRegistry registry = new FileSinkRegistry(properties, scheduler)) {
+            for (int i = 0; i < 1000; i++) {
+                registry.write(owner, file, bytes("line " + i + "\n"), false, false);
+            }
+            assertEquals(1, registry.size());
+            await().atMost(Duration.ofSeconds(5)).until(() -> Files.readString(file).endsWith("line 999\n"));
+            // '>' truncates open file
+            registry.write(owner, file, bytes("last\n"), true, true);
+            assertEquals("last\n", Files.readString(file));
+            registry.release(owner);
+            assertEquals(0, registry.size());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void sharedByOwners(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("out.txt");
+        Object first = new Object();
+        Object second = new Object();
+        try (FileSinkRegistry registry = new FileSinkRegistry()) {
+            registry.write(first, file, bytes("a\n"), false, false);
+            registry.write(second, file, bytes("b\n"), false, false);
+            // without scheduler, files are flushed on each write
+            assertEquals("a\nb\n", Files.readString(file));
+            registry.release(first);
+            assertEquals(1, registry.size());
+            registry.release(second);
+            assertEquals(0, registry.size());
+            // without owner, file is closed right away
+            registry.write(null, file, bytes("c\n"), false, false);
+            assertEquals(0, registry.size());
+            assertEquals("a\nb\nc\n", Files.readString(file));
+        }
+    }
+
+    @Test
+    void gzip(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("out.txt.gz");
+        Object owner = new Object();
+        try (FileSinkRegistry registry = new FileSinkRegistry()) {
+            registry.write(owner, file, bytes("compressed\n"), false, false);
+            registry.write(owner, file, bytes("content\n"), false, false);
+            registry.release(owner);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertEquals("compressed\ncontent\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void rotation(@TempDir Path dir) throws Exception {
+        SshShellProperties.Save properties = new SshShellProperties.Save();
+        properties.setMaxFileSize(10);
+        properties.setMaxFiles(2);
+        Path file = dir.resolve("out.log");
+        Object owner = new Object();
+        try (FileSinkRegistry registry = new FileSinkRegistry(properties, null)) {
+            for (int i = 0; i < 5; i++) {
+                registry.write(owner, file, bytes("0123456789-" + i + "\n"), false, true);
+            }
+        }
+        // file is rotated as soon as it reaches maximum size, keeping only 2 rotated files
+        assertEquals("", Files.readString(file));
+        assertEquals("0123456789-4\n", Files.readString(dir.resolve("out.log.1")));
+        assertEquals("0123456789-3\n", Files.readString(dir.resolve("out.log.2")));
+        assertFalse(Files.exists(dir.resolve("out.log.3")));
+        assertEquals(dir.resolve("out.1.gz"), FileSinkRegistry.rotated(dir.resolve("out.gz"), 1));
+    }
+
+    @Test
+    void errors(@TempDir Path dir) {
+        try (FileSinkRegistry registry = new FileSinkRegistry()) {
+            assertThrows(IOException.class,
+                    () -> registry.write(new Object(), dir.resolve("missing/out.txt"), bytes("x"), false, true));
+            assertEquals(0, registry.size());
+        }
+    }
+}